@@ -0,0 +1,137 @@
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sun.net.httpserver.HttpServer;
+import config.ServerConfig;
+import metrics.MetricsRegistry;
+import model.Flight;
+import model.SearchFilter;
+import model.SearchResult;
+import model.TicketReservationRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import services.AirlinesService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Concurrent /search traffic against the web server in each executor mode. The airlines are
+ * replaced by a service that blocks for a fixed time, like a parallel fan-out would.
+ * Reports throughput and the latency distribution (p0.50, p0.99, p0.999) per mode.
+ * <p>Run with: mvn -Pbenchmark compile exec:exec -Djmh.includes=WebServerLoadBenchmark
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(64)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WebServerLoadBenchmark {
+
+    @Param({"dispatcher", "platform", "virtual"})
+    private String executorMode;
+
+    // Time spent by the airlines service on each search
+    @Param({"50"})
+    private long upstreamLatencyMillis;
+
+    private HttpServer server;
+    private HttpClient httpClient;
+    private HttpRequest searchRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("server.host", "127.0.0.1");
+        properties.setProperty("server.port", "0");
+        properties.setProperty("server.backlog", "1024");
+        properties.setProperty("server.executor", executorMode);
+        properties.setProperty("server.worker.threads", "32");
+        // Compares the executors under overload, which admission control would refuse instead
+        properties.setProperty("admission.enabled", "false");
+
+        ObjectMapper jacksonObjectMapper = new ObjectMapper();
+        jacksonObjectMapper.registerModule(new JavaTimeModule());
+
+        server = WebServer.createServer(new ServerConfig(properties),
+                new SlowAirlinesService(upstreamLatencyMillis), jacksonObjectMapper,
+                new MetricsRegistry());
+        server.start();
+
+        httpClient = HttpClient.newHttpClient();
+        searchRequest = HttpRequest.newBuilder()
+                .GET()
+                .uri(URI.create("http://127.0.0.1:" + server.getAddress().getPort()
+                        + "/search?origin=lax&destination=sfo&day=01&month=12&year=2030"))
+                .header("Accept", "application/json")
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop(0);
+        if (server.getExecutor() instanceof ExecutorService) {
+            ((ExecutorService) server.getExecutor()).shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public int search() throws IOException, InterruptedException {
+        return httpClient.send(searchRequest, HttpResponse.BodyHandlers.ofString()).statusCode();
+    }
+
+    private static class SlowAirlinesService implements AirlinesService {
+        private final long latencyMillis;
+
+        SlowAirlinesService(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public SearchResult searchFlights(String origin, String destination, LocalDate date,
+                                          Optional<String> referer, SearchFilter filter,
+                                          Consumer<Flight> onFlight) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            List<Flight> flights = List.of(new Flight(1, "Lufthansa", 300, 2, 4, date),
+                    new Flight(2, "Hawaiian Airlines", 340, 2, 7, date));
+            for (Flight flight : flights) {
+                if (filter.matches(flight)) {
+                    onFlight.accept(flight);
+                }
+            }
+            return SearchResult.complete(filter.apply(flights));
+        }
+
+        @Override
+        public long reserveFlight(TicketReservationRequest request) {
+            return -1;
+        }
+    }
+}
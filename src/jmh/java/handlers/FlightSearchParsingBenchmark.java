@@ -0,0 +1,48 @@
+package handlers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query string parsing done by {@link FlightSearchHandler} on every search request
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FlightSearchParsingBenchmark {
+    private URI requestUri;
+    private Map<String, String> parameters;
+
+    @Setup
+    public void setUp() {
+        requestUri = URI.create("http://127.0.0.1:8080/search"
+                + "?origin=lax&destination=sfo&day=03&month=12&year=2023");
+        parameters = FlightSearchHandler.parseQueryParameters(requestUri);
+    }
+
+    @Benchmark
+    public Map<String, String> parseQueryParameters() {
+        return FlightSearchHandler.parseQueryParameters(requestUri);
+    }
+
+    @Benchmark
+    public LocalDate parseDate() {
+        return FlightSearchHandler.parseDate(parameters);
+    }
+}
@@ -0,0 +1,109 @@
+package handlers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import model.Flight;
+import model.FlightsWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the buffered pretty-printed search response with the streaming compact one.
+ * The gc profiler enabled by the benchmark profile reports gc.alloc.rate.norm, the bytes
+ * allocated per operation.
+ * <p>Run with: mvn -Pbenchmark compile exec:exec -Djmh.includes=FlightsSerializationBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FlightsSerializationBenchmark {
+
+    @Param({"10", "1000"})
+    private int numberOfFlights;
+
+    private ObjectMapper jacksonObjectMapper;
+    private FlightSearchHandler flightSearchHandler;
+    private List<Flight> flights;
+
+    @Setup
+    public void setUp() {
+        jacksonObjectMapper = new ObjectMapper();
+        jacksonObjectMapper.registerModule(new JavaTimeModule());
+        flightSearchHandler = new FlightSearchHandler(null, jacksonObjectMapper);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        flights = new ArrayList<>();
+        for (int i = 0; i < numberOfFlights; i++) {
+            flights.add(new Flight(i, "Airline " + (i % 10), random.nextDouble(100, 1000), 2,
+                    random.nextInt(1, 300), LocalDate.of(2030, 12, 1)));
+        }
+    }
+
+    /**
+     * The response path before streaming: pretty-printed String, newline appended,
+     * then encoded to bytes once for the length and once for the body
+     */
+    @Benchmark
+    public void bufferedPrettyString(Blackhole blackhole) throws IOException {
+        String responseBody = jacksonObjectMapper.writerWithDefaultPrettyPrinter()
+                .writeValueAsString(new FlightsWrapper(flights));
+        if (!responseBody.isBlank() && !responseBody.endsWith("\n")) {
+            responseBody += "\n";
+        }
+        blackhole.consume(responseBody.getBytes().length);
+        new BlackholeOutputStream(blackhole).write(responseBody.getBytes());
+    }
+
+    @Benchmark
+    public void streamingCompact(Blackhole blackhole) throws IOException {
+        flightSearchHandler.writeFlights(new BlackholeOutputStream(blackhole), flights, false);
+    }
+
+    @Benchmark
+    public void streamingPretty(Blackhole blackhole) throws IOException {
+        flightSearchHandler.writeFlights(new BlackholeOutputStream(blackhole), flights, true);
+    }
+
+    /**
+     * Stands in for the response body of the exchange without buffering what is written
+     */
+    private static class BlackholeOutputStream extends OutputStream {
+        private final Blackhole blackhole;
+
+        private BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+            blackhole.consume(len);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package handlers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import model.Flight;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the server side cost of a /search response: serialization, entity tag and
+ * compression. The body sizes of each encoding are printed once per trial, they are the
+ * bandwidth side of the trade-off.
+ * <p>Ten flights is the result of a search of the ten airlines, one flight each.
+ * <p>Run with: mvn -Pbenchmark compile exec:exec -Djmh.includes=SearchResponseEncodingBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchResponseEncodingBenchmark {
+
+    @Param({"10", "100"})
+    private int numberOfFlights;
+
+    @Param({"false", "true"})
+    private boolean pretty;
+
+    @Param({"IDENTITY", "GZIP", "DEFLATE"})
+    private ContentEncoding contentEncoding;
+
+    private FlightSearchHandler flightSearchHandler;
+    private List<Flight> flights;
+    private byte[] body;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper jacksonObjectMapper = new ObjectMapper();
+        jacksonObjectMapper.registerModule(new JavaTimeModule());
+        flightSearchHandler = new FlightSearchHandler(null, jacksonObjectMapper);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        flights = new ArrayList<>();
+        for (int i = 0; i < numberOfFlights; i++) {
+            flights.add(new Flight(random.nextInt(1, 1_000_000), "Airline " + (i % 10),
+                    random.nextDouble(100, 1000), 2, random.nextInt(1, 300),
+                    LocalDate.of(2030, 12, 1)));
+        }
+        body = serialize();
+        System.out.println(contentEncoding + " body: " + body.length + " bytes before, "
+                + contentEncoding.encode(body).length + " bytes after encoding");
+    }
+
+    /**
+     * Everything a 200 response computes, with a buffer standing in for the socket
+     */
+    @Benchmark
+    public byte[] fullResponse() throws IOException {
+        FlightSearchHandler.entityTag(flights, pretty);
+        ByteArrayOutputStream socket = new ByteArrayOutputStream();
+        try (OutputStream outputStream = contentEncoding.wrap(socket, false)) {
+            flightSearchHandler.writeFlights(outputStream, flights, pretty);
+        }
+        return socket.toByteArray();
+    }
+
+    /**
+     * A 304 response tags the flights but skips serializing, compressing and sending them
+     */
+    @Benchmark
+    public boolean notModifiedResponse() {
+        return FlightSearchHandler.matchesAny("\"0123\"",
+                FlightSearchHandler.entityTag(flights, pretty));
+    }
+
+    @Benchmark
+    public byte[] encodeOnly() throws IOException {
+        return contentEncoding.encode(body);
+    }
+
+    private byte[] serialize() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        flightSearchHandler.writeFlights(outputStream, flights, pretty);
+        return outputStream.toByteArray();
+    }
+}
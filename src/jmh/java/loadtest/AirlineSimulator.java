@@ -0,0 +1,250 @@
+package loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import model.Flight;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulates the ten airlines of the built-in airline registry on ports 9000-9009, answering
+ * /show_flights and /book_flight like the real airline server.
+ * <p>Each airline sells a fixed inventory of flights. A route and date always maps to the same
+ * flight, which is sold out once its seats are booked. Answers are delayed by a log-normal
+ * latency with an occasional slow answer, and a share of the calls fail with a 500 or hang
+ * without an answer.
+ * <p>Settings are system properties, and each one can be overridden for a single airline with
+ * simulator.airline.N.setting, N going from 0 for port 9000 to 9 for port 9009:
+ * <pre>
+ * simulator.latency.median.ms  Median latency of an answer (20)
+ * simulator.latency.sigma      Spread of the log-normal latency, 0 for a fixed latency (0.5)
+ * simulator.slow.rate          Share of the answers taking simulator.slow.ms instead (0.01)
+ * simulator.slow.ms            Latency of the slow answers (1000)
+ * simulator.error.rate         Share of the calls answered with a 500 (0)
+ * simulator.hang.rate          Share of the calls never answered (0)
+ * simulator.hang.ms            How long a hanging call holds its connection (60000)
+ * simulator.flights            Number of flights each airline sells (1000)
+ * simulator.seats              Seats of each flight (200)
+ * </pre>
+ * <p>Run with: make simulator SIMULATOR_OPTS='-Dsimulator.error.rate=0.01'
+ */
+public class AirlineSimulator {
+    private static final String[] AIRLINE_NAMES = {"Delta Airlines", "Alaska Airlines",
+            "Qatar Airways", "Singapore Airlines", "Japan Airlines", "JetBlue",
+            "Hawaiian Airlines", "British Airways", "Korean air", "Lufthansa"};
+    private static final int FIRST_PORT = 9000;
+    private static final String PREFIX = "simulator.";
+
+    private final Properties properties;
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    // Delays the answers without holding a thread per pending answer
+    private final ScheduledExecutorService delayer = Executors.newScheduledThreadPool(
+            Runtime.getRuntime().availableProcessors());
+    private final ObjectMapper jacksonObjectMapper = new ObjectMapper();
+    private final AtomicLong nextConfirmationNumber = new AtomicLong(1);
+
+    public AirlineSimulator(Properties properties) {
+        this.properties = properties;
+        jacksonObjectMapper.registerModule(new JavaTimeModule());
+    }
+
+    public static void main(String[] args) throws IOException {
+        AirlineSimulator simulator = new AirlineSimulator(System.getProperties());
+        simulator.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(simulator::stop));
+        System.out.println("Simulating " + AIRLINE_NAMES.length + " airlines on ports "
+                + FIRST_PORT + "-" + (FIRST_PORT + AIRLINE_NAMES.length - 1));
+    }
+
+    public void start() throws IOException {
+        for (int i = 0; i < AIRLINE_NAMES.length; i++) {
+            SimulatedAirline airline = new SimulatedAirline(i);
+            HttpServer server = HttpServer.create(
+                    new InetSocketAddress("127.0.0.1", FIRST_PORT + i), 1024);
+            server.createContext("/show_flights", airline::showFlight);
+            server.createContext("/book_flight", airline::bookFlight);
+            server.setExecutor(executor);
+            server.start();
+            servers.add(server);
+        }
+    }
+
+    public void stop() {
+        servers.forEach(server -> server.stop(0));
+        servers.clear();
+        delayer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private class SimulatedAirline {
+        private final String name;
+        private final double medianLatencyMillis;
+        private final double latencySigma;
+        private final double slowRate;
+        private final long slowLatencyMillis;
+        private final double errorRate;
+        private final double hangRate;
+        private final long hangMillis;
+        private final int numberOfFlights;
+        private final AtomicIntegerArray seatsLeft;
+
+        private SimulatedAirline(int index) {
+            this.name = AIRLINE_NAMES[index];
+            this.medianLatencyMillis = getDouble(index, "latency.median.ms", 20);
+            this.latencySigma = getDouble(index, "latency.sigma", 0.5);
+            this.slowRate = getDouble(index, "slow.rate", 0.01);
+            this.slowLatencyMillis = (long) getDouble(index, "slow.ms", 1000);
+            this.errorRate = getDouble(index, "error.rate", 0);
+            this.hangRate = getDouble(index, "hang.rate", 0);
+            this.hangMillis = (long) getDouble(index, "hang.ms", 60_000);
+            this.numberOfFlights = Math.max(1, (int) getDouble(index, "flights", 1000));
+            this.seatsLeft = new AtomicIntegerArray(numberOfFlights);
+            int seats = (int) getDouble(index, "seats", 200);
+            for (int i = 0; i < numberOfFlights; i++) {
+                seatsLeft.set(i, seats);
+            }
+        }
+
+        /**
+         * Answers with the flight of the route and date, or an empty body once it is sold out
+         */
+        private void showFlight(HttpExchange exchange) throws IOException {
+            String origin = null;
+            String destination = null;
+            LocalDate date = null;
+            for (NameValuePair parameter : URLEncodedUtils.parse(exchange.getRequestURI(),
+                    StandardCharsets.UTF_8)) {
+                switch (parameter.getName()) {
+                    case "origin":
+                        origin = parameter.getValue();
+                        break;
+                    case "destination":
+                        destination = parameter.getValue();
+                        break;
+                    case "date":
+                        try {
+                            date = LocalDate.parse(parameter.getValue());
+                        } catch (DateTimeParseException e) {
+                            date = null;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (origin == null || destination == null || date == null) {
+                respond(exchange, 400, "Missing origin, destination or date");
+                return;
+            }
+
+            int flightIndex = Math.floorMod((origin + '/' + destination + '/' + date).hashCode()
+                    * 31 + name.hashCode(), numberOfFlights);
+            int seats = seatsLeft.get(flightIndex);
+            if (seats <= 0) {
+                respond(exchange, 200, "");
+                return;
+            }
+            // The price only depends on the flight, so repeated searches see the same flight
+            double price = 100 + Math.floorMod(flightIndex * 7919, 900);
+            Flight flight = new Flight(flightIndex + 1, name, price, flightIndex % 3, seats,
+                    date);
+            respond(exchange, 200, jacksonObjectMapper.writeValueAsString(flight));
+        }
+
+        /**
+         * Books seats and answers with a confirmation number, or a 400 if the flight does not
+         * have enough seats left
+         */
+        private void bookFlight(HttpExchange exchange) throws IOException {
+            JsonNode request;
+            try {
+                request = jacksonObjectMapper.readTree(exchange.getRequestBody());
+            } catch (IOException e) {
+                respond(exchange, 400, "Invalid reservation request");
+                return;
+            }
+            int flightIndex = request.path("id").asInt() - 1;
+            int tickets = request.path("numberOfTickets").asInt();
+            if (flightIndex < 0 || flightIndex >= numberOfFlights || tickets <= 0) {
+                respond(exchange, 400, "Unknown flight");
+                return;
+            }
+            while (true) {
+                int seats = seatsLeft.get(flightIndex);
+                if (seats < tickets) {
+                    respond(exchange, 400, "Not enough seats available");
+                    return;
+                }
+                if (seatsLeft.compareAndSet(flightIndex, seats, seats - tickets)) {
+                    break;
+                }
+            }
+            respond(exchange, 200, String.valueOf(nextConfirmationNumber.getAndIncrement()));
+        }
+
+        /**
+         * Sends the answer after the simulated latency, or fails or hangs the call
+         */
+        private void respond(HttpExchange exchange, int statusCode, String body) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            double outcome = random.nextDouble();
+            if (outcome < hangRate) {
+                delayer.schedule(exchange::close, hangMillis, TimeUnit.MILLISECONDS);
+                return;
+            }
+            boolean error = outcome < hangRate + errorRate;
+            long latencyMillis = random.nextDouble() < slowRate
+                    ? slowLatencyMillis
+                    : Math.round(medianLatencyMillis
+                    * Math.exp(latencySigma * random.nextGaussian()));
+            // Sending may block on the connection, so it is left to the executor
+            delayer.schedule(() -> executor.execute(() -> send(exchange,
+                    error ? 500 : statusCode, error ? "Simulated failure" : body)),
+                    latencyMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int statusCode, String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(statusCode, bytes.length == 0 ? -1 : bytes.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(bytes);
+            }
+        } catch (IOException e) {
+            // The client gave up waiting, which the simulated latency is meant to cause
+            exchange.close();
+        }
+    }
+
+    /**
+     * Reads a setting of an airline, falling back to the setting of all the airlines
+     */
+    private double getDouble(int airlineIndex, String setting, double defaultValue) {
+        String value = properties.getProperty(PREFIX + "airline." + airlineIndex + "." + setting,
+                properties.getProperty(PREFIX + setting));
+        return value == null || value.isBlank() ? defaultValue : Double.parseDouble(value.trim());
+    }
+}
@@ -0,0 +1,261 @@
+package loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives /search and /reserve of a running server at a fixed rate and reports the throughput
+ * and the latency percentiles of each.
+ * <p>The load is open loop: requests are sent on a fixed schedule whether or not the previous
+ * ones have been answered, and latencies are measured from the time a request was due rather
+ * than the time it was sent. A server falling behind then shows in the percentiles instead of
+ * silently slowing the load down.
+ * <p>Reservations book flights returned by earlier searches, with the built-in token.
+ * <p>Settings are system properties:
+ * <pre>
+ * load.target        Address of the server (http://127.0.0.1:8080)
+ * load.rps           Requests per second (100)
+ * load.duration.s    Length of the measured run (30)
+ * load.warmup.s      Length of the unmeasured run before it (5)
+ * load.reserve.ratio Share of the requests which are reservations (0.1)
+ * load.routes        Number of distinct routes searched, fewer routes hit the caches more (50)
+ * load.max.in.flight Requests in flight from which new ones are counted as dropped (10000)
+ * load.timeout.ms    Time after which a request counts as failed (10000)
+ * load.token         Authentication token of the reservations (abcd)
+ * </pre>
+ * <p>Run with: make load-test LOAD_OPTS='-Dload.rps=500'
+ */
+public class LoadGenerator {
+    private static final String[] AIRPORTS = {"lax", "sfo", "jfk", "sea", "ord", "atl", "bos",
+            "den", "mia", "hnl", "lhr", "fra", "nrt", "sin", "doh", "icn"};
+    private static final int RECENT_FLIGHTS = 1024;
+
+    private final URI target;
+    private final int requestsPerSecond;
+    private final Duration duration;
+    private final Duration warmup;
+    private final double reserveRatio;
+    private final int maxInFlight;
+    private final Duration timeout;
+    private final String token;
+    private final String[][] routes;
+    private final LocalDate date = LocalDate.now().plusDays(30);
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final ObjectMapper jacksonObjectMapper = new ObjectMapper();
+    // Flights returned by recent searches, for the reservations to book
+    private final AtomicReferenceArray<JsonNode> recentFlights =
+            new AtomicReferenceArray<>(RECENT_FLIGHTS);
+    private final AtomicInteger nextRecentFlight = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public LoadGenerator(Properties properties) {
+        this.target = URI.create(properties.getProperty("load.target", "http://127.0.0.1:8080"));
+        this.requestsPerSecond = Integer.parseInt(properties.getProperty("load.rps", "100"));
+        this.duration = Duration.ofSeconds(
+                Long.parseLong(properties.getProperty("load.duration.s", "30")));
+        this.warmup = Duration.ofSeconds(
+                Long.parseLong(properties.getProperty("load.warmup.s", "5")));
+        this.reserveRatio = Double.parseDouble(properties.getProperty("load.reserve.ratio", "0.1"));
+        this.maxInFlight = Integer.parseInt(properties.getProperty("load.max.in.flight", "10000"));
+        this.timeout = Duration.ofMillis(
+                Long.parseLong(properties.getProperty("load.timeout.ms", "10000")));
+        this.token = properties.getProperty("load.token", "abcd");
+
+        int numberOfRoutes = Integer.parseInt(properties.getProperty("load.routes", "50"));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        this.routes = new String[numberOfRoutes][];
+        for (int i = 0; i < numberOfRoutes; i++) {
+            int origin = random.nextInt(AIRPORTS.length);
+            int destination = (origin + 1 + random.nextInt(AIRPORTS.length - 1))
+                    % AIRPORTS.length;
+            routes[i] = new String[]{AIRPORTS[origin], AIRPORTS[destination]};
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadGenerator loadGenerator = new LoadGenerator(System.getProperties());
+        System.out.println("Warming up for " + loadGenerator.warmup.toSeconds() + " s");
+        loadGenerator.run(loadGenerator.warmup);
+        System.out.println("Measuring " + loadGenerator.requestsPerSecond + " requests/s for "
+                + loadGenerator.duration.toSeconds() + " s");
+        Report report = loadGenerator.run(loadGenerator.duration);
+        report.print(System.out);
+    }
+
+    /**
+     * Sends requests on schedule for the given time, then waits for the last ones
+     */
+    public Report run(Duration runDuration) throws InterruptedException {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+        long numberOfRequests = runDuration.toNanos() / intervalNanos;
+        Report report = new Report((int) numberOfRequests);
+        long startNanos = System.nanoTime();
+        for (long i = 0; i < numberOfRequests; i++) {
+            long dueNanos = startNanos + i * intervalNanos;
+            long waitNanos = dueNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+            if (inFlight.get() >= maxInFlight) {
+                report.dropped.increment();
+                continue;
+            }
+            send(report, dueNanos);
+        }
+        long sendingEndNanos = System.nanoTime();
+        long waitDeadlineNanos = sendingEndNanos + timeout.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < waitDeadlineNanos) {
+            Thread.sleep(10);
+        }
+        report.elapsedNanos = sendingEndNanos - startNanos;
+        return report;
+    }
+
+    private void send(Report report, long dueNanos) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        JsonNode flight = recentFlights.get(random.nextInt(RECENT_FLIGHTS));
+        boolean reserve = flight != null && random.nextDouble() < reserveRatio;
+        HttpRequest request = reserve ? reserveRequest(flight) : searchRequest(random);
+        Stats stats = reserve ? report.reservations : report.searches;
+
+        inFlight.incrementAndGet();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, e) -> {
+                    inFlight.decrementAndGet();
+                    long latencyNanos = System.nanoTime() - dueNanos;
+                    if (e != null) {
+                        stats.record(-1, latencyNanos);
+                        return;
+                    }
+                    stats.record(response.statusCode(), latencyNanos);
+                    if (!reserve && response.statusCode() == 200) {
+                        rememberFlights(response.body());
+                    }
+                });
+    }
+
+    private HttpRequest searchRequest(ThreadLocalRandom random) {
+        String[] route = routes[random.nextInt(routes.length)];
+        return HttpRequest.newBuilder(target.resolve("/search?origin=" + route[0]
+                        + "&destination=" + route[1] + "&day=" + date.getDayOfMonth()
+                        + "&month=" + date.getMonthValue() + "&year=" + date.getYear()))
+                .timeout(timeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+    }
+
+    private HttpRequest reserveRequest(JsonNode flight) {
+        String body = "{\"id\": " + flight.path("id").asInt()
+                + ", \"airlineName\": " + flight.path("airlineName")
+                + ", \"numberOfTickets\": 1}";
+        return HttpRequest.newBuilder(target.resolve("/reserve"))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .header("Cookie", "flight_reservation_auth=" + token)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private void rememberFlights(String responseBody) {
+        try {
+            for (JsonNode flight : jacksonObjectMapper.readTree(responseBody).path("flights")) {
+                recentFlights.set(Math.floorMod(nextRecentFlight.getAndIncrement(),
+                        RECENT_FLIGHTS), flight);
+            }
+        } catch (IOException e) {
+            // A malformed answer is already counted by its status code
+        }
+    }
+
+    /**
+     * Results of one run
+     */
+    public static class Report {
+        private final Stats searches;
+        private final Stats reservations;
+        private final LongAdder dropped = new LongAdder();
+        private long elapsedNanos;
+
+        private Report(int expectedRequests) {
+            this.searches = new Stats(expectedRequests);
+            this.reservations = new Stats(expectedRequests / 4 + 16);
+        }
+
+        public void print(PrintStream out) {
+            double seconds = elapsedNanos / 1e9;
+            out.printf("%-12s %9s %10s %9s %9s %9s %9s %9s  %s%n", "route", "requests", "req/s",
+                    "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "status codes");
+            searches.print(out, "/search", seconds);
+            reservations.print(out, "/reserve", seconds);
+            if (dropped.sum() > 0) {
+                out.println("Dropped " + dropped.sum() + " requests over the in-flight limit");
+            }
+        }
+    }
+
+    /**
+     * Latencies and status codes of one route. Status -1 stands for a request with no answer
+     */
+    private static class Stats {
+        private final Map<Integer, LongAdder> statusCodes = new ConcurrentHashMap<>();
+        private long[] latencies;
+        private int count;
+
+        private Stats(int expectedRequests) {
+            this.latencies = new long[Math.max(16, expectedRequests)];
+        }
+
+        private void record(int statusCode, long latencyNanos) {
+            statusCodes.computeIfAbsent(statusCode, code -> new LongAdder()).increment();
+            synchronized (this) {
+                if (count == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, count * 2);
+                }
+                latencies[count++] = latencyNanos;
+            }
+        }
+
+        private synchronized void print(PrintStream out, String route, double seconds) {
+            if (count == 0) {
+                out.printf("%-12s %9d%n", route, 0);
+                return;
+            }
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            Map<Integer, Long> codes = new TreeMap<>();
+            statusCodes.forEach((code, adder) -> codes.put(code, adder.sum()));
+            out.printf("%-12s %9d %10.1f %9.1f %9.1f %9.1f %9.1f %9.1f  %s%n", route, count,
+                    count / seconds, millis(sorted, 0.50), millis(sorted, 0.90),
+                    millis(sorted, 0.99), millis(sorted, 0.999),
+                    sorted[sorted.length - 1] / 1e6, codes);
+        }
+
+        private static double millis(long[] sorted, double percentile) {
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+}
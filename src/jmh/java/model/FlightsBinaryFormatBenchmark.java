@@ -0,0 +1,97 @@
+package model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the compact JSON search response with the {@link FlightsBinaryFormat}, encoding on
+ * the server side and decoding on the client side. The body sizes of both are printed once per
+ * trial.
+ * <p>Run with: mvn -Pbenchmark compile exec:exec -Djmh.includes=FlightsBinaryFormatBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FlightsBinaryFormatBenchmark {
+
+    @Param({"10", "1000"})
+    private int numberOfFlights;
+
+    private ObjectWriter jsonWriter;
+    private ObjectReader jsonReader;
+    private List<Flight> flights;
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper jacksonObjectMapper = new ObjectMapper();
+        jacksonObjectMapper.registerModule(new JavaTimeModule());
+        jsonWriter = jacksonObjectMapper.writerFor(FlightsWrapper.class);
+        jsonReader = jacksonObjectMapper.readerFor(FlightsResponse.class);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        flights = new ArrayList<>();
+        for (int i = 0; i < numberOfFlights; i++) {
+            flights.add(new Flight(random.nextInt(1, 1_000_000), "Airline " + (i % 10),
+                    random.nextDouble(100, 1000), 2, random.nextInt(1, 300),
+                    LocalDate.of(2030, 12, 1)));
+        }
+        json = jsonWriter.writeValueAsBytes(new FlightsWrapper(flights));
+        binary = FlightsBinaryFormat.encode(flights);
+        System.out.println(numberOfFlights + " flights: " + json.length + " bytes of JSON, "
+                + binary.length + " bytes of binary");
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws IOException {
+        return jsonWriter.writeValueAsBytes(new FlightsWrapper(flights));
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return FlightsBinaryFormat.encode(flights);
+    }
+
+    @Benchmark
+    public List<Flight> decodeJson() throws IOException {
+        FlightsResponse response = jsonReader.readValue(json);
+        return response.flights;
+    }
+
+    @Benchmark
+    public List<Flight> decodeBinary() {
+        return FlightsBinaryFormat.decode(ByteBuffer.wrap(binary));
+    }
+
+    /**
+     * What a client reads a JSON search response into
+     */
+    public static class FlightsResponse {
+        public List<Flight> flights;
+    }
+}
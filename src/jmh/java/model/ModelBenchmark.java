@@ -0,0 +1,93 @@
+package model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson deserialization of the airline and client payloads, and sorting of flights by price
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelBenchmark {
+
+    @Param({"10000"})
+    private int numberOfFlightsToSort;
+
+    private ObjectMapper jacksonObjectMapper;
+    private ObjectReader flightReader;
+    private String flightJson;
+    private String ticketReservationRequestJson;
+    private List<Flight> unsortedFlights;
+
+    @Setup
+    public void setUp() throws IOException {
+        jacksonObjectMapper = new ObjectMapper();
+        jacksonObjectMapper.registerModule(new JavaTimeModule());
+        flightReader = jacksonObjectMapper.readerFor(Flight.class);
+
+        flightJson = jacksonObjectMapper.writeValueAsString(
+                new Flight(677885206, "Singapore Airlines", 412.37, 2, 29,
+                        LocalDate.of(2030, 12, 1)));
+        ticketReservationRequestJson = "{\"id\": 677885206, "
+                + "\"airlineName\": \"Singapore Airlines\", \"numberOfTickets\": 29}";
+
+        Random random = new Random(42);
+        unsortedFlights = new ArrayList<>();
+        for (int i = 0; i < numberOfFlightsToSort; i++) {
+            unsortedFlights.add(new Flight(i, "Airline " + (i % 10),
+                    100 + random.nextDouble() * 900, 2, 50, LocalDate.of(2030, 12, 1)));
+        }
+    }
+
+    /**
+     * The way RealAirlinesService parses an airline answer
+     */
+    @Benchmark
+    public Flight deserializeFlight() throws IOException {
+        return jacksonObjectMapper.readValue(flightJson, Flight.class);
+    }
+
+    @Benchmark
+    public Flight deserializeFlightWithCachedReader() throws IOException {
+        return flightReader.readValue(flightJson);
+    }
+
+    /**
+     * The way FlightReservationHandler parses a reservation request
+     */
+    @Benchmark
+    public TicketReservationRequest deserializeTicketReservationRequest() throws IOException {
+        return jacksonObjectMapper.readValue(ticketReservationRequestJson,
+                TicketReservationRequest.class);
+    }
+
+    @Benchmark
+    public List<Flight> sortFlights() {
+        List<Flight> flights = new ArrayList<>(unsortedFlights);
+        flights.sort(null);
+        return flights;
+    }
+}
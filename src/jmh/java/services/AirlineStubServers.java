@@ -0,0 +1,76 @@
+package services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import model.Flight;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Ten local airline servers on ports 9000-9009 answering /show_flights after an injected delay.
+ * Most answers take the base latency, a small fraction take the slow latency to model a tail.
+ */
+class AirlineStubServers {
+    private static final int FIRST_PORT = 9000;
+    private static final int NUMBER_OF_AIRLINES = 10;
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ObjectMapper jacksonObjectMapper = new ObjectMapper();
+    private final long baseLatencyMillis;
+    private final long slowLatencyMillis;
+    private final double slowFraction;
+
+    AirlineStubServers(long baseLatencyMillis, long slowLatencyMillis, double slowFraction) {
+        this.baseLatencyMillis = baseLatencyMillis;
+        this.slowLatencyMillis = slowLatencyMillis;
+        this.slowFraction = slowFraction;
+        jacksonObjectMapper.registerModule(new JavaTimeModule());
+    }
+
+    void start() throws IOException {
+        for (int i = 0; i < NUMBER_OF_AIRLINES; i++) {
+            int flightId = i + 1;
+            HttpServer server = HttpServer.create(
+                    new InetSocketAddress("127.0.0.1", FIRST_PORT + i), 0);
+            server.createContext("/show_flights", exchange -> showFlight(exchange, flightId));
+            server.setExecutor(executor);
+            server.start();
+            servers.add(server);
+        }
+    }
+
+    void stop() {
+        servers.forEach(server -> server.stop(0));
+        servers.clear();
+        executor.shutdownNow();
+    }
+
+    private void showFlight(HttpExchange exchange, int flightId) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long latency = random.nextDouble() < slowFraction ? slowLatencyMillis : baseLatencyMillis;
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Flight flight = new Flight(flightId, "Airline " + flightId,
+                random.nextDouble(100, 1000), 2, 50, LocalDate.now());
+        byte[] body = jacksonObjectMapper.writeValueAsBytes(flight);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+}
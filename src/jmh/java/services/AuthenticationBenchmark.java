@@ -0,0 +1,88 @@
+package services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Cookie authentication done on every reservation request, comparing the single-pass scanner
+ * of {@link AuthenticationService} with the previous stream and map based implementation.
+ * The gc profiler reports the bytes allocated per check.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthenticationBenchmark {
+    private static final String AUTHENTICATION_KEY = "flight_reservation_auth";
+    private static final Set<String> AUTHENTICATED_VALUES = Set.of("abcd", "aabbccc");
+
+    private AuthenticationService authenticationService;
+    private List<String> validCookies;
+    private List<String> invalidCookies;
+    private List<String> singleHeaderCookies;
+
+    @Setup
+    public void setUp() {
+        authenticationService = new AuthenticationService();
+        // One pair per header, the only format the previous implementation understood
+        validCookies = List.of("session=5f2b1c", "theme=dark", "flight_reservation_auth=abcd");
+        invalidCookies = List.of("session=5f2b1c", "theme=dark", "flight_reservation_auth=zzzz");
+        singleHeaderCookies = List.of("session=5f2b1c; theme=dark; flight_reservation_auth=abcd");
+    }
+
+    @Benchmark
+    public boolean checkValidToken() {
+        return authenticationService.check(validCookies);
+    }
+
+    @Benchmark
+    public boolean checkInvalidToken() {
+        return authenticationService.check(invalidCookies);
+    }
+
+    @Benchmark
+    public boolean checkSingleHeader() {
+        return authenticationService.check(singleHeaderCookies);
+    }
+
+    @Benchmark
+    public boolean legacyCheckValidToken() {
+        return legacyCheck(validCookies);
+    }
+
+    @Benchmark
+    public boolean legacyCheckInvalidToken() {
+        return legacyCheck(invalidCookies);
+    }
+
+    /**
+     * The implementation replaced by the single-pass scanner
+     */
+    private static boolean legacyCheck(List<String> cookies) {
+        Map<String, String> keyValuePairs = cookies.stream()
+                .filter(pair -> pair.contains("=") && pair.length() > 2)
+                .collect(Collectors.toMap(pair -> pair.substring(0, pair.indexOf("="))
+                        , pair -> pair.substring(pair.indexOf("=") + 1)));
+
+        return keyValuePairs.entrySet()
+                .stream()
+                .filter(e -> e.getKey().equals(AUTHENTICATION_KEY))
+                .anyMatch(e -> AUTHENTICATED_VALUES.contains(e.getValue()));
+    }
+}
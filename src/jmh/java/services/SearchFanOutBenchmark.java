@@ -0,0 +1,84 @@
+package services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import config.SearchMode;
+import config.ServerConfig;
+import model.Flight;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search latency of the sequential and the parallel fan-out against ten local airline stubs.
+ * SampleTime mode reports the p0.50 and p0.99 percentiles for each search mode.
+ * <p>Run with: mvn -Pbenchmark compile exec:exec -Djmh.includes=SearchFanOutBenchmark
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchFanOutBenchmark {
+
+    @Param({"SEQUENTIAL", "PARALLEL"})
+    private SearchMode searchMode;
+
+    // Base latency of every airline in milliseconds
+    @Param({"20"})
+    private long baseLatencyMillis;
+
+    // Latency of the slow answers in milliseconds
+    @Param({"250"})
+    private long slowLatencyMillis;
+
+    // Fraction of answers that take the slow latency
+    @Param({"0.02"})
+    private double slowFraction;
+
+    private AirlineStubServers airlineStubServers;
+    private AirlinesService airlinesService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        airlineStubServers = new AirlineStubServers(baseLatencyMillis, slowLatencyMillis,
+                slowFraction);
+        airlineStubServers.start();
+
+        ObjectMapper jacksonObjectMapper = new ObjectMapper();
+        jacksonObjectMapper.registerModule(new JavaTimeModule());
+        Properties properties = new Properties();
+        properties.setProperty("upstream.search.mode", searchMode.name());
+        properties.setProperty("upstream.search.deadline.ms", "5000");
+        airlinesService = new RealAirlinesService(jacksonObjectMapper,
+                new ServerConfig(properties));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        airlineStubServers.stop();
+    }
+
+    @Benchmark
+    public List<Flight> findAllFlight() {
+        return FlightSearches.findAllFlight(airlinesService, "lax", "sfo",
+                LocalDate.of(2030, 12, 1));
+    }
+}
@@ -1,37 +1,569 @@
+import admission.ConcurrencyLimitFilter;
+import admission.InFlightLimiter;
+import admission.LoadShedder;
+import admission.LoadSheddingFilter;
+import admission.RateLimitFilter;
+import admission.RateLimiter;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
+import config.ExecutorMode;
+import config.ServerConfig;
+import handlers.BatchReservationHandler;
+import handlers.CircuitBreakerHandler;
 import handlers.FlightReservationHandler;
 import handlers.FlightSearchHandler;
+import handlers.FlightSearchStreamHandler;
+import handlers.MetricsHandler;
+import handlers.ReservationLookupHandler;
 import handlers.StatusHandler;
+import inventory.InventorySnapshot;
+import journal.ReservationJournal;
+import logging.AccessLogFilter;
+import logging.Level;
+import logging.RequestLogger;
+import metrics.MetricsFilter;
+import metrics.MetricsRegistry;
+import services.AirlineRegistry;
 import services.AirlinesService;
 import services.AuthenticationService;
+import services.CachingAirlinesService;
+import services.IdempotencyStore;
+import services.InMemoryTokenStore;
+import services.InventoryAirlinesService;
+import services.JournalingAirlinesService;
 import services.RealAirlinesService;
+import services.SeatCheckingAirlinesService;
+import services.SeatLedger;
+import services.UpstreamExecutor;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class WebServer {
     private static final String STATUS_ROUTE = "/status";
     private static final String SEARCH_FLIGHTS_ROUTE = "/search";
+    private static final String SEARCH_FLIGHTS_STREAM_ROUTE = "/search/stream";
     private static final String RESERVE_TICKETS_ROUTE = "/reserve";
+    private static final String RESERVE_TICKETS_BATCH_ROUTE = "/reserve/batch";
+    private static final String CIRCUIT_BREAKERS_ROUTE = "/admin/circuit-breakers";
+    private static final String RESERVATIONS_ROUTE = "/admin/reservations";
+    private static final String METRICS_ROUTE = "/metrics";
+    private static final RequestLogger LOGGER = RequestLogger.get();
 
     public static void main(String[] args) throws IOException {
+        ServerConfig config = ServerConfig.fromSystemProperties();
+
         ObjectMapper jacksonObjectMapper = new ObjectMapper();
         jacksonObjectMapper.registerModule(new JavaTimeModule());
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+
+        configureUpstreamConnectionPool(config);
+        AirlineRegistry airlineRegistry = createAirlineRegistry(config,
+                createUpstreamExecutor(config, metricsRegistry));
+        RealAirlinesService realAirlinesService = new RealAirlinesService(jacksonObjectMapper,
+                config, metricsRegistry, airlineRegistry);
+        AirlinesService airlinesService = realAirlinesService;
+        ReservationJournal reservationJournal = createReservationJournal(config);
+        if (reservationJournal != null) {
+            airlinesService = createJournalingAirlinesService(config, airlinesService,
+                    reservationJournal, metricsRegistry);
+        }
+        // Below the cache and the inventory, so the ledger only records answers of the airlines
+        if (config.isSeatLedgerEnabled()) {
+            airlinesService = new SeatCheckingAirlinesService(airlinesService,
+                    new SeatLedger(config.getSeatLedgerTimeToLive(),
+                            config.getSeatLedgerMaxEntries()),
+                    metricsRegistry);
+        }
+        if (config.isInventoryEnabled()) {
+            airlinesService = createInventoryAirlinesService(config, airlinesService,
+                    metricsRegistry);
+        } else if (config.isSearchCacheEnabled()) {
+            airlinesService = createCachingAirlinesService(config, airlinesService,
+                    metricsRegistry);
+        }
+
+        HttpServer server = createServer(config, airlinesService, jacksonObjectMapper,
+                metricsRegistry);
+        HttpServer adminServer = createAdminServer(config);
+        adminServer.createContext(CIRCUIT_BREAKERS_ROUTE,
+                new CircuitBreakerHandler(realAirlinesService, jacksonObjectMapper));
+        if (reservationJournal != null) {
+            adminServer.createContext(RESERVATIONS_ROUTE,
+                    new ReservationLookupHandler(reservationJournal, jacksonObjectMapper));
+            metricsRegistry.gauge("journal_reservations", "Reservations held by the journal",
+                    reservationJournal::size);
+        }
+        airlineRegistry.setAddedAirlinesListener(realAirlinesService::warmUp);
+        realAirlinesService.warmUp(airlineRegistry.getAirlines());
+        LOGGER.info("Starting Flight Reservation Server");
+        adminServer.start();
+        server.start();
+    }
 
+    /**
+     * Creates the HTTP server with all the routes registered, without starting it
+     */
+    static HttpServer createServer(ServerConfig config,
+                                   AirlinesService airlinesService,
+                                   ObjectMapper jacksonObjectMapper,
+                                   MetricsRegistry metricsRegistry) throws IOException {
         HttpServer server = HttpServer.create(
-                new InetSocketAddress("localhost", 8080),
-                0);
+                new InetSocketAddress(config.getHost(), config.getPort()),
+                config.getBacklog());
+        LoadShedder loadShedder = new LoadShedder(config.getShedQueueCapacity());
 
-        AirlinesService airlinesService = new RealAirlinesService(jacksonObjectMapper);
+        createMeasuredContext(server, metricsRegistry, loadShedder, STATUS_ROUTE,
+                new StatusHandler());
+        HttpContext searchContext = createMeasuredContext(server, metricsRegistry, loadShedder,
+                SEARCH_FLIGHTS_ROUTE, new FlightSearchHandler(airlinesService,
+                        jacksonObjectMapper, config.getSearchCompressionThreshold()));
+        HttpContext searchStreamContext = createMeasuredContext(server, metricsRegistry,
+                loadShedder, SEARCH_FLIGHTS_STREAM_ROUTE,
+                new FlightSearchStreamHandler(airlinesService, jacksonObjectMapper,
+                        metricsRegistry));
+        AuthenticationService authenticationService = createAuthenticationService(config);
+        HttpContext reserveContext = createMeasuredContext(server, metricsRegistry, loadShedder,
+                RESERVE_TICKETS_ROUTE, new FlightReservationHandler(airlinesService,
+                        jacksonObjectMapper, authenticationService,
+                        createIdempotencyStore(config)));
+        HttpContext reserveBatchContext = createMeasuredContext(server, metricsRegistry,
+                loadShedder, RESERVE_TICKETS_BATCH_ROUTE,
+                new BatchReservationHandler(airlinesService, jacksonObjectMapper,
+                        authenticationService));
+        addAdmissionFilters(config, metricsRegistry, authenticationService, searchContext,
+                searchStreamContext, reserveContext, reserveBatchContext);
+        server.createContext(METRICS_ROUTE, new MetricsHandler(metricsRegistry));
+        metricsRegistry.counter("log_events_dropped_total",
+                "Log events dropped because the log buffer was full",
+                LOGGER::getDroppedEvents);
 
-        server.createContext(STATUS_ROUTE, new StatusHandler());
-        server.createContext(SEARCH_FLIGHTS_ROUTE, new FlightSearchHandler(airlinesService,
-                jacksonObjectMapper));
-        server.createContext(RESERVE_TICKETS_ROUTE, new FlightReservationHandler(airlinesService,
-                jacksonObjectMapper, new AuthenticationService()));
-        System.out.println("Starting Flight Reservation Server");
-        server.start();
+        Executor workerExecutor = createWorkerExecutor(config, loadShedder);
+        if (workerExecutor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor threadPoolExecutor = (ThreadPoolExecutor) workerExecutor;
+            metricsRegistry.gauge("worker_queue_depth",
+                    "Requests waiting for a worker thread",
+                    () -> threadPoolExecutor.getQueue().size());
+            metricsRegistry.gauge("worker_active_threads",
+                    "Worker threads currently handling a request",
+                    threadPoolExecutor::getActiveCount);
+            metricsRegistry.counter("worker_dropped_connections_total",
+                    "Connections closed without a response because the worker pool and the "
+                            + "load shedder were both full",
+                    loadShedder::getDroppedConnections);
+        }
+        server.setExecutor(workerExecutor);
+        return server;
+    }
+
+    /**
+     * Creates the listener of the admin routes, without starting it. The admin routes are not
+     * authenticated, so they are kept off the public listener and bound to a local address.
+     * Their handlers are cheap and run on the dispatcher thread of the listener.
+     */
+    static HttpServer createAdminServer(ServerConfig config) throws IOException {
+        return HttpServer.create(
+                new InetSocketAddress(config.getAdminHost(), config.getAdminPort()), 0);
+    }
+
+    /**
+     * Registers a route whose requests are counted, timed and logged, and refused with a 503
+     * response when the worker pool had no room for them
+     */
+    private static HttpContext createMeasuredContext(HttpServer server,
+                                                     MetricsRegistry metricsRegistry,
+                                                     LoadShedder loadShedder,
+                                                     String route,
+                                                     HttpHandler handler) {
+        HttpContext context = server.createContext(route, handler);
+        context.getFilters().add(new MetricsFilter(metricsRegistry, route));
+        context.getFilters().add(new AccessLogFilter(LOGGER, route));
+        context.getFilters().add(new LoadSheddingFilter(metricsRegistry, route, loadShedder));
+        return context;
+    }
+
+    /**
+     * Adds the rate limits and the limits of requests in flight to the search and reservation
+     * routes, after the metrics and access log filters so the refused requests are measured.
+     * <p>Searches and reservations are separate priority lanes: searches may only take the
+     * server capacity minus the share kept for reservations, so a flood of searches cannot
+     * delay the reservations. Each lane also has its own rate limit per client. Streamed
+     * searches share the limits of the other searches.
+     * <p>These filters only run once a worker thread took the request, so they keep the
+     * worker threads and the airlines from being monopolised by one kind of request. Requests
+     * arriving while the worker queue is full are refused before they wait, by the
+     * {@link LoadShedder}.
+     */
+    static void addAdmissionFilters(ServerConfig config, MetricsRegistry metricsRegistry,
+                                    AuthenticationService authenticationService,
+                                    HttpContext searchContext, HttpContext searchStreamContext,
+                                    HttpContext reserveContext,
+                                    HttpContext reserveBatchContext) {
+        if (config.isRateLimitEnabled()) {
+            RateLimiter searchRateLimiter = createRateLimiter(config);
+            RateLimiter reservationRateLimiter = createRateLimiter(config);
+            searchContext.getFilters().add(new RateLimitFilter(metricsRegistry,
+                    SEARCH_FLIGHTS_ROUTE, searchRateLimiter, authenticationService));
+            searchStreamContext.getFilters().add(new RateLimitFilter(metricsRegistry,
+                    SEARCH_FLIGHTS_STREAM_ROUTE, searchRateLimiter, authenticationService));
+            reserveContext.getFilters().add(new RateLimitFilter(metricsRegistry,
+                    RESERVE_TICKETS_ROUTE, reservationRateLimiter, authenticationService));
+            reserveBatchContext.getFilters().add(new RateLimitFilter(metricsRegistry,
+                    RESERVE_TICKETS_BATCH_ROUTE, reservationRateLimiter,
+                    authenticationService));
+            metricsRegistry.gauge("rate_limiter_clients",
+                    "Clients whose rate of requests is tracked",
+                    () -> searchRateLimiter.size() + reservationRateLimiter.size());
+        }
+
+        if (config.isAdmissionControlEnabled()) {
+            InFlightLimiter serverLimiter = new InFlightLimiter(config.getAdmissionMaxInFlight());
+            int searchCeiling = Math.max(1, serverLimiter.getCapacity()
+                    - serverLimiter.getCapacity() * config.getReservationReservedPercent() / 100);
+            // Single and batch reservations share the same limit of the reservation lane
+            InFlightLimiter reservationLimiter =
+                    new InFlightLimiter(config.getReservationMaxInFlight());
+            InFlightLimiter searchLimiter = new InFlightLimiter(config.getSearchMaxInFlight());
+            searchContext.getFilters().add(new ConcurrencyLimitFilter(metricsRegistry,
+                    SEARCH_FLIGHTS_ROUTE, searchLimiter, serverLimiter, searchCeiling));
+            searchStreamContext.getFilters().add(new ConcurrencyLimitFilter(metricsRegistry,
+                    SEARCH_FLIGHTS_STREAM_ROUTE, searchLimiter, serverLimiter, searchCeiling));
+            reserveContext.getFilters().add(new ConcurrencyLimitFilter(metricsRegistry,
+                    RESERVE_TICKETS_ROUTE, reservationLimiter, serverLimiter,
+                    serverLimiter.getCapacity()));
+            reserveBatchContext.getFilters().add(new ConcurrencyLimitFilter(metricsRegistry,
+                    RESERVE_TICKETS_BATCH_ROUTE, reservationLimiter, serverLimiter,
+                    serverLimiter.getCapacity()));
+            metricsRegistry.gauge("admission_server_in_flight",
+                    "Requests holding a permit of the server capacity",
+                    serverLimiter::getInFlight);
+        }
+    }
+
+    private static RateLimiter createRateLimiter(ServerConfig config) {
+        return new RateLimiter(config.getRateLimitRequestsPerSecond(), config.getRateLimitBurst(),
+                config.getRateLimitMaxClients());
+    }
+
+    /**
+     * Wraps the airlines service with the reservation journal, exporting the records that could
+     * not be written
+     */
+    static JournalingAirlinesService createJournalingAirlinesService(
+            ServerConfig config, AirlinesService airlinesService,
+            ReservationJournal reservationJournal, MetricsRegistry metricsRegistry) {
+        JournalingAirlinesService journalingAirlinesService = new JournalingAirlinesService(
+                airlinesService, reservationJournal, config.getReservationJournalSyncTimeout());
+        metricsRegistry.counter("reservation_journal_failed_writes_total",
+                "Confirmed reservations whose record failed or was not on disk in time",
+                journalingAirlinesService::getFailedWrites);
+        metricsRegistry.counter("reservation_journal_retried_writes_total",
+                "Records of confirmed reservations written again in the background",
+                journalingAirlinesService::getRetriedWrites);
+        metricsRegistry.counter("reservation_journal_lost_writes_total",
+                "Confirmed reservations whose record could not be written after every retry",
+                journalingAirlinesService::getLostWrites);
+        return journalingAirlinesService;
+    }
+
+    /**
+     * Wraps the airlines service with a search cache whose hits, misses and evictions are
+     * exported
+     */
+    static CachingAirlinesService createCachingAirlinesService(
+            ServerConfig config, AirlinesService airlinesService,
+            MetricsRegistry metricsRegistry) {
+        CachingAirlinesService cachingAirlinesService = new CachingAirlinesService(
+                airlinesService, config.getSearchCacheTimeToLive(),
+                config.getSearchCacheMaxEntries());
+        metricsRegistry.counter("search_cache_hits_total",
+                "Searches answered from the search cache",
+                cachingAirlinesService::getHits);
+        metricsRegistry.counter("search_cache_misses_total",
+                "Searches not found in the search cache",
+                cachingAirlinesService::getMisses);
+        metricsRegistry.counter("search_cache_coalesced_misses_total",
+                "Misses which waited for a search already in flight instead of starting one",
+                cachingAirlinesService::getCoalescedMisses);
+        metricsRegistry.counter("search_cache_evictions_total",
+                "Least recently used searches evicted because the search cache was full",
+                cachingAirlinesService::getEvictions);
+        metricsRegistry.counter("search_cache_invalidations_total",
+                "Cached searches dropped because one of their flights was reserved",
+                cachingAirlinesService::getInvalidations);
+        metricsRegistry.counter("search_cache_incomplete_results_total",
+                "Searches not cached because some airlines did not answer",
+                cachingAirlinesService::getIncompleteResults);
+        metricsRegistry.counter("search_cache_stale_results_total",
+                "Searches not cached because their route was invalidated while in flight",
+                cachingAirlinesService::getStaleResults);
+        metricsRegistry.gauge("search_cache_entries",
+                "Routes and dates held by the search cache",
+                cachingAirlinesService::size);
+        return cachingAirlinesService;
+    }
+
+    /**
+     * Wraps the airlines service with an inventory snapshot whose most queried routes are
+     * refreshed in the background
+     */
+    static InventoryAirlinesService createInventoryAirlinesService(
+            ServerConfig config, AirlinesService airlinesService,
+            MetricsRegistry metricsRegistry) {
+        InventoryAirlinesService inventoryAirlinesService = new InventoryAirlinesService(
+                airlinesService, new InventorySnapshot(config.getInventoryMaxEntries()),
+                config.getInventoryMaxStaleness());
+        metricsRegistry.counter("inventory_hits_total",
+                "Searches answered from the inventory snapshot",
+                inventoryAirlinesService::getHits);
+        metricsRegistry.counter("inventory_misses_total",
+                "Searches of the airlines because the inventory snapshot was missing or stale",
+                inventoryAirlinesService::getMisses);
+        metricsRegistry.counter("inventory_refreshes_total",
+                "Routes and dates of the inventory snapshot searched again in the background",
+                inventoryAirlinesService::getRefreshes);
+        metricsRegistry.gauge("inventory_entries",
+                "Routes and dates held by the inventory snapshot",
+                inventoryAirlinesService::size);
+
+        ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(
+                runnable -> {
+                    Thread thread = new Thread(runnable, "inventory-refresher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        long refreshIntervalMillis = config.getInventoryRefreshInterval().toMillis();
+        int refreshBatchSize = config.getInventoryRefreshBatchSize();
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                int refreshedRoutes = inventoryAirlinesService.refreshHotRoutes(refreshBatchSize);
+                if (refreshedRoutes > 0 && LOGGER.isEnabled(Level.DEBUG)) {
+                    LOGGER.debug("Refreshed " + refreshedRoutes + " inventory routes");
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error("Could not refresh the inventory snapshot", e);
+            }
+        }, refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+        return inventoryAirlinesService;
+    }
+
+    /**
+     * Sets the connection pool properties of the JDK HTTP client, which reads them once, when the
+     * first client is created. A property already given on the command line is kept.
+     * <p>The HTTP/2 keep-alive is only honoured from JDK 20, older JDKs keep HTTP/2 connections
+     * open until the airline closes them.
+     */
+    static void configureUpstreamConnectionPool(ServerConfig config) {
+        long keepAliveSeconds = Math.max(1,
+                (config.getUpstreamKeepAliveTimeout().toMillis() + 999) / 1000);
+        setSystemPropertyIfAbsent("jdk.httpclient.keepalive.timeout",
+                String.valueOf(keepAliveSeconds));
+        setSystemPropertyIfAbsent("jdk.httpclient.keepalive.timeout.h2",
+                String.valueOf(keepAliveSeconds));
+        setSystemPropertyIfAbsent("jdk.httpclient.connectionPoolSize",
+                String.valueOf(config.getUpstreamMaxIdleConnections()));
+    }
+
+    private static void setSystemPropertyIfAbsent(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    /**
+     * A bounded pool of daemon threads with a bounded queue handling the answers of all the
+     * airlines, in place of the unbounded pool each HTTP client creates by default. Airline
+     * calls fail at once while its queue is full.
+     */
+    static UpstreamExecutor createUpstreamExecutor(ServerConfig config,
+                                                   MetricsRegistry metricsRegistry) {
+        UpstreamExecutor executor = new UpstreamExecutor(config.getUpstreamExecutorThreads(),
+                config.getUpstreamExecutorQueueCapacity());
+        metricsRegistry.gauge("upstream_executor_queue_depth",
+                "Airline answers waiting for an upstream thread",
+                executor::getQueueDepth);
+        metricsRegistry.gauge("upstream_executor_active_threads",
+                "Upstream threads currently handling an airline answer",
+                executor::getActiveThreads);
+        metricsRegistry.counter("upstream_executor_refused_calls_total",
+                "Airline calls failed without being sent because the upstream queue was full",
+                executor::getRefusedCalls);
+        metricsRegistry.counter("upstream_executor_overflowed_tasks_total",
+                "Airline answers handled on the common pool because the upstream queue was full",
+                executor::getOverflowedTasks);
+        return executor;
+    }
+
+    /**
+     * Creates the registry of the airlines listed in the configured file, reloaded in the
+     * background whenever the file changes. Uses the built-in airlines when no file is configured.
+     *
+     * @param upstreamExecutor - Executor handling the answers of the airlines
+     */
+    static AirlineRegistry createAirlineRegistry(ServerConfig config,
+                                                 UpstreamExecutor upstreamExecutor)
+            throws IOException {
+        if (config.getAirlinesFile() == null) {
+            return new AirlineRegistry(config, upstreamExecutor);
+        }
+        Path airlinesFile = Path.of(config.getAirlinesFile());
+        AirlineRegistry airlineRegistry = AirlineRegistry.fromFile(airlinesFile, config,
+                upstreamExecutor);
+        LOGGER.info("Loaded " + airlineRegistry.size() + " airlines from " + airlinesFile);
+
+        ScheduledExecutorService reloader = Executors.newSingleThreadScheduledExecutor(
+                runnable -> {
+                    Thread thread = new Thread(runnable, "airline-registry-reloader");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        long reloadIntervalMillis = config.getAirlinesReloadInterval().toMillis();
+        reloader.scheduleWithFixedDelay(() -> {
+            try {
+                if (airlineRegistry.reloadIfModified(airlinesFile)) {
+                    LOGGER.info("Reloaded " + airlineRegistry.size() + " airlines");
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Could not reload the airlines", e);
+            }
+        }, reloadIntervalMillis, reloadIntervalMillis, TimeUnit.MILLISECONDS);
+        return airlineRegistry;
+    }
+
+    /**
+     * Creates the store of the idempotency keys, appending to the configured journal file if any
+     */
+    static IdempotencyStore createIdempotencyStore(ServerConfig config) throws IOException {
+        if (config.getIdempotencyJournalFile() == null) {
+            return new IdempotencyStore(config.getIdempotencyKeyTimeToLive(),
+                    config.getIdempotencyMaxKeys());
+        }
+        IdempotencyStore idempotencyStore = IdempotencyStore.withJournal(
+                config.getIdempotencyKeyTimeToLive(), config.getIdempotencyMaxKeys(),
+                Path.of(config.getIdempotencyJournalFile()));
+        LOGGER.info("Loaded " + idempotencyStore.size() + " idempotency keys");
+        return idempotencyStore;
+    }
+
+    /**
+     * Opens the configured reservation journal, replaying the reservations already in it
+     *
+     * @return - null if no journal directory is configured
+     */
+    static ReservationJournal createReservationJournal(ServerConfig config) throws IOException {
+        if (config.getReservationJournalDirectory() == null) {
+            return null;
+        }
+        ReservationJournal reservationJournal = ReservationJournal.open(
+                Path.of(config.getReservationJournalDirectory()),
+                config.getReservationJournalSegmentBytes());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                reservationJournal.close();
+            } catch (IOException e) {
+                LOGGER.error("Could not close the reservation journal", e);
+            }
+        }, "reservation-journal-closer"));
+        return reservationJournal;
+    }
+
+    /**
+     * Creates the authentication service with the tokens of the configured file, reloaded in the
+     * background whenever the file changes. Uses the built-in tokens when no file is configured.
+     */
+    static AuthenticationService createAuthenticationService(ServerConfig config)
+            throws IOException {
+        if (config.getAuthenticationTokensFile() == null) {
+            return new AuthenticationService();
+        }
+        Path tokensFile = Path.of(config.getAuthenticationTokensFile());
+        InMemoryTokenStore tokenStore = InMemoryTokenStore.fromFile(tokensFile);
+
+        ScheduledExecutorService reloader = Executors.newSingleThreadScheduledExecutor(
+                runnable -> {
+                    Thread thread = new Thread(runnable, "token-store-reloader");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        long reloadIntervalMillis = config.getAuthenticationTokensReloadInterval().toMillis();
+        reloader.scheduleWithFixedDelay(() -> {
+            try {
+                if (tokenStore.reloadIfModified(tokensFile)) {
+                    LOGGER.info("Reloaded " + tokenStore.size() + " authentication tokens");
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Could not reload the authentication tokens", e);
+            }
+        }, reloadIntervalMillis, reloadIntervalMillis, TimeUnit.MILLISECONDS);
+        return new AuthenticationService(tokenStore);
+    }
+
+    /**
+     * Creates the executor running the request handlers.
+     *
+     * @param loadShedder - Takes the requests the platform thread pool has no room for
+     * @return - null in {@link ExecutorMode#DISPATCHER} mode, which makes the server run the
+     * handlers on its own dispatcher thread
+     */
+    static Executor createWorkerExecutor(ServerConfig config, LoadShedder loadShedder) {
+        switch (config.getExecutorMode()) {
+            case DISPATCHER:
+                return null;
+            case VIRTUAL:
+                ExecutorService virtualThreadExecutor = createVirtualThreadExecutor();
+                if (virtualThreadExecutor != null) {
+                    return virtualThreadExecutor;
+                }
+                LOGGER.warn("Virtual threads are not supported by this JDK, falling back to a "
+                        + "platform thread pool");
+                return createPlatformThreadExecutor(config, loadShedder);
+            case PLATFORM:
+            default:
+                return createPlatformThreadExecutor(config, loadShedder);
+        }
+    }
+
+    /**
+     * A fixed pool of platform threads with a small bounded queue. When the queue is full the
+     * request goes to the load shedder, which refuses it with a 503 response, so the dispatcher
+     * thread never runs a request itself and keeps accepting connections.
+     */
+    private static ExecutorService createPlatformThreadExecutor(ServerConfig config,
+                                                                LoadShedder loadShedder) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                config.getWorkerThreads(),
+                config.getWorkerThreads(),
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(config.getWorkerQueueCapacity()),
+                loadShedder);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Looks up {@code Executors.newVirtualThreadPerTaskExecutor()} reflectively so the server
+     * still compiles and runs on JDKs without virtual threads.
+     *
+     * @return - the virtual thread executor or null if the JDK does not support it
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
     }
 }
@@ -0,0 +1,105 @@
+package admission;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import metrics.Counter;
+import metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Refuses requests to the route it is added to with a 503 response once too many are in
+ * flight, instead of letting them queue up and slow every other request down.
+ * <p>A request needs a permit of its route and a permit of the server wide limiter. Routes
+ * share the server wide capacity as priority lanes: a route may only take server permits up to
+ * its ceiling, so a flood of requests to a low priority route leaves the permits above its
+ * ceiling to the high priority routes.
+ */
+public class ConcurrencyLimitFilter extends Filter {
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final String route;
+    private final InFlightLimiter routeLimiter;
+    private final InFlightLimiter serverLimiter;
+    private final int serverCeiling;
+    private final Counter routeRejections;
+    private final Counter serverRejections;
+
+    /**
+     * @param route         - Route the filter is added to, used in the metrics
+     * @param routeLimiter  - Limit of the requests in flight to this route, may be shared with
+     *                      routes of the same lane
+     * @param serverLimiter - Capacity shared by all the routes
+     * @param serverCeiling - Number of requests in flight on the whole server from which the
+     *                      requests to this route are refused
+     */
+    public ConcurrencyLimitFilter(MetricsRegistry metricsRegistry, String route,
+                                  InFlightLimiter routeLimiter, InFlightLimiter serverLimiter,
+                                  int serverCeiling) {
+        this.route = route;
+        this.routeLimiter = routeLimiter;
+        this.serverLimiter = serverLimiter;
+        this.serverCeiling = serverCeiling;
+        this.routeRejections = metricsRegistry.counter("admission_rejections_total",
+                "Requests refused before reaching their handler, by route and reason",
+                "route", route, "reason", "route_in_flight");
+        this.serverRejections = metricsRegistry.counter("admission_rejections_total",
+                "Requests refused before reaching their handler, by route and reason",
+                "route", route, "reason", "server_in_flight");
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        if (!routeLimiter.tryAcquire()) {
+            routeRejections.increment();
+            reject(exchange);
+            return;
+        }
+        try {
+            if (!serverLimiter.tryAcquire(serverCeiling)) {
+                serverRejections.increment();
+                reject(exchange);
+                return;
+            }
+            try {
+                chain.doFilter(exchange);
+            } finally {
+                serverLimiter.release();
+            }
+        } finally {
+            routeLimiter.release();
+        }
+    }
+
+    @Override
+    public String description() {
+        return "Limits the requests in flight to " + route;
+    }
+
+    private static void reject(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_SECONDS);
+        sendResponse(exchange, 503, "The server is busy, try again later");
+    }
+
+    /**
+     * Sends back an HTTP response to the server
+     *
+     * @param exchange     - Object indicating the exchange of HTTP request/response between
+     *                     client/server
+     * @param statusCode   - The HTTP response code to be included in the HTTP response
+     * @param responseBody - The body payload of the HTTP response
+     */
+    private static void sendResponse(HttpExchange exchange,
+                                     int statusCode,
+                                     String responseBody) throws IOException {
+        if (!responseBody.isBlank() && !responseBody.endsWith("\n")) {
+            responseBody += "\n";
+        }
+        exchange.sendResponseHeaders(statusCode, responseBody.getBytes().length);
+        OutputStream outputStream = exchange.getResponseBody();
+        outputStream.write(responseBody.getBytes());
+        outputStream.flush();
+        outputStream.close();
+    }
+}
@@ -0,0 +1,52 @@
+package admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the requests in flight against a capacity, without locking.
+ * <p>Each caller passes its own ceiling, which is how priority lanes share one capacity: a low
+ * priority lane acquires up to a ceiling below the capacity, leaving the rest to the lanes
+ * allowed up to the full capacity.
+ */
+public class InFlightLimiter {
+    private final int capacity;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public InFlightLimiter(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param ceiling - Number of requests in flight from which this caller is refused, capped
+     *                by the capacity
+     * @return - true if the request may go ahead. It must then call {@link #release()}
+     */
+    public boolean tryAcquire(int ceiling) {
+        int limit = Math.min(ceiling, capacity);
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public boolean tryAcquire() {
+        return tryAcquire(capacity);
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
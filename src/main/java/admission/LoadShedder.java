@@ -0,0 +1,69 @@
+package admission;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Takes the requests the worker pool has no room for, so they are refused without waiting for
+ * a worker thread and without blocking the dispatcher thread of the server.
+ * <p>Refused requests run on a single shedder thread, where {@link LoadSheddingFilter} answers
+ * them with a 503 response instead of running their handler. Once the queue of the shedder
+ * thread is full too, the request is rejected and the server closes its connection.
+ */
+public class LoadShedder implements RejectedExecutionHandler {
+    private final ThreadPoolExecutor shedderExecutor;
+    private final LongAdder shedRequests = new LongAdder();
+    private final LongAdder droppedConnections = new LongAdder();
+    private volatile Thread shedderThread;
+
+    /**
+     * @param queueCapacity - Number of refused requests that may wait for the shedder thread
+     */
+    public LoadShedder(int queueCapacity) {
+        this.shedderExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "load-shedder");
+                    thread.setDaemon(true);
+                    shedderThread = thread;
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public void rejectedExecution(Runnable request, ThreadPoolExecutor workerExecutor) {
+        try {
+            shedderExecutor.execute(request);
+            shedRequests.increment();
+        } catch (RejectedExecutionException e) {
+            droppedConnections.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * @return - true if the calling thread runs a request the worker pool had no room for
+     */
+    public boolean isShedding() {
+        return Thread.currentThread() == shedderThread;
+    }
+
+    /**
+     * Number of requests handed to the shedder thread
+     */
+    public long getShedRequests() {
+        return shedRequests.sum();
+    }
+
+    /**
+     * Number of requests whose connection was closed because the shedder thread was full too
+     */
+    public long getDroppedConnections() {
+        return droppedConnections.sum();
+    }
+}
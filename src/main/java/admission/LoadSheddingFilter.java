@@ -0,0 +1,70 @@
+package admission;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import metrics.Counter;
+import metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Answers with a 503 response the requests to its route which the worker pool had no room
+ * for, see {@link LoadShedder}. Other requests go through untouched.
+ */
+public class LoadSheddingFilter extends Filter {
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final String route;
+    private final LoadShedder loadShedder;
+    private final Counter rejections;
+
+    /**
+     * @param route - Route the filter is added to, used in the metrics
+     */
+    public LoadSheddingFilter(MetricsRegistry metricsRegistry, String route,
+                              LoadShedder loadShedder) {
+        this.route = route;
+        this.loadShedder = loadShedder;
+        this.rejections = metricsRegistry.counter("admission_rejections_total",
+                "Requests refused before reaching their handler, by route and reason",
+                "route", route, "reason", "worker_queue_full");
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        if (!loadShedder.isShedding()) {
+            chain.doFilter(exchange);
+            return;
+        }
+        rejections.increment();
+        exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_SECONDS);
+        sendResponse(exchange, 503, "The server is busy, try again later");
+    }
+
+    @Override
+    public String description() {
+        return "Refuses the requests to " + route + " the worker pool had no room for";
+    }
+
+    /**
+     * Sends back an HTTP response to the server
+     *
+     * @param exchange     - Object indicating the exchange of HTTP request/response between
+     *                     client/server
+     * @param statusCode   - The HTTP response code to be included in the HTTP response
+     * @param responseBody - The body payload of the HTTP response
+     */
+    private static void sendResponse(HttpExchange exchange,
+                                     int statusCode,
+                                     String responseBody) throws IOException {
+        if (!responseBody.isBlank() && !responseBody.endsWith("\n")) {
+            responseBody += "\n";
+        }
+        exchange.sendResponseHeaders(statusCode, responseBody.getBytes().length);
+        OutputStream outputStream = exchange.getResponseBody();
+        outputStream.write(responseBody.getBytes());
+        outputStream.flush();
+        outputStream.close();
+    }
+}
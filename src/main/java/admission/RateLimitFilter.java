@@ -0,0 +1,86 @@
+package admission;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import metrics.Counter;
+import metrics.MetricsRegistry;
+import services.AuthenticationService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refuses requests to the route it is added to with a 429 response once their client has used
+ * up its {@link RateLimiter} bucket.
+ * <p>Authenticated clients are told apart by their authentication token, which lets clients
+ * behind the same address have their own buckets. The others are told apart by their address.
+ */
+public class RateLimitFilter extends Filter {
+    private final String route;
+    private final RateLimiter rateLimiter;
+    private final AuthenticationService authenticationService;
+    private final Counter rejections;
+
+    /**
+     * @param rateLimiter - Buckets of the clients, may be shared with other routes so they
+     *                    share the same budget
+     */
+    public RateLimitFilter(MetricsRegistry metricsRegistry, String route, RateLimiter rateLimiter,
+                           AuthenticationService authenticationService) {
+        this.route = route;
+        this.rateLimiter = rateLimiter;
+        this.authenticationService = authenticationService;
+        this.rejections = metricsRegistry.counter("admission_rejections_total",
+                "Requests refused before reaching their handler, by route and reason",
+                "route", route, "reason", "rate_limit");
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        long waitNanos = rateLimiter.tryAcquire(clientOf(exchange));
+        if (waitNanos > 0) {
+            rejections.increment();
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(
+                    Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999))));
+            sendResponse(exchange, 429, "Too many requests, try again later");
+            return;
+        }
+        chain.doFilter(exchange);
+    }
+
+    @Override
+    public String description() {
+        return "Limits the rate of requests per client to " + route;
+    }
+
+    private String clientOf(HttpExchange exchange) {
+        String token = authenticationService.findValidToken(
+                exchange.getRequestHeaders().get("Cookie"));
+        if (token != null) {
+            return "token:" + token;
+        }
+        return exchange.getRemoteAddress().getAddress().getHostAddress();
+    }
+
+    /**
+     * Sends back an HTTP response to the server
+     *
+     * @param exchange     - Object indicating the exchange of HTTP request/response between
+     *                     client/server
+     * @param statusCode   - The HTTP response code to be included in the HTTP response
+     * @param responseBody - The body payload of the HTTP response
+     */
+    private static void sendResponse(HttpExchange exchange,
+                                     int statusCode,
+                                     String responseBody) throws IOException {
+        if (!responseBody.isBlank() && !responseBody.endsWith("\n")) {
+            responseBody += "\n";
+        }
+        exchange.sendResponseHeaders(statusCode, responseBody.getBytes().length);
+        OutputStream outputStream = exchange.getResponseBody();
+        outputStream.write(responseBody.getBytes());
+        outputStream.flush();
+        outputStream.close();
+    }
+}
@@ -0,0 +1,95 @@
+package admission;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket per client, refilled at a fixed rate up to a burst size.
+ * <p>Each bucket is a single number, the time at which it will be full again, so taking a token
+ * is one compare-and-set and clients never contend with each other. A bucket already full holds
+ * no information and is dropped when the limiter runs out of room. If it is still full after
+ * that, new clients share a single overflow bucket, which keeps the memory bounded without
+ * letting new clients through unlimited.
+ */
+public class RateLimiter {
+    private final long refillIntervalNanos;
+    private final long burstNanos;
+    private final int maxClients;
+    // From a client to the time at which its bucket is full again, in System.nanoTime() units
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong overflowBucket;
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    /**
+     * @param requestsPerSecond - Rate at which the bucket of a client is refilled
+     * @param burst             - Number of tokens in a full bucket
+     * @param maxClients        - Maximum number of clients with a bucket of their own
+     */
+    public RateLimiter(double requestsPerSecond, int burst, int maxClients) {
+        this.refillIntervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1)
+                / requestsPerSecond));
+        this.burstNanos = refillIntervalNanos * Math.max(1, burst);
+        this.maxClients = maxClients;
+        this.overflowBucket = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Takes a token from the bucket of a client
+     *
+     * @return - 0 if the request may go ahead, otherwise the nanoseconds to wait before the
+     * bucket of the client holds a token again
+     */
+    public long tryAcquire(String client) {
+        long nowNanos = System.nanoTime();
+        AtomicLong bucket = buckets.get(client);
+        if (bucket == null) {
+            bucket = newBucket(client, nowNanos);
+        }
+        while (true) {
+            long fullAtNanos = bucket.get();
+            long newFullAtNanos = Math.max(fullAtNanos - nowNanos, 0) + nowNanos
+                    + refillIntervalNanos;
+            long waitNanos = newFullAtNanos - nowNanos - burstNanos;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (bucket.compareAndSet(fullAtNanos, newFullAtNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * @return - the number of clients with a bucket of their own
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    private AtomicLong newBucket(String client, long nowNanos) {
+        if (buckets.size() >= maxClients) {
+            sweep(nowNanos);
+            if (buckets.size() >= maxClients) {
+                return overflowBucket;
+            }
+        }
+        return buckets.computeIfAbsent(client, key -> new AtomicLong(nowNanos));
+    }
+
+    /**
+     * Drops the full buckets. Threads finding another thread sweeping go on without waiting.
+     */
+    private void sweep(long nowNanos) {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            buckets.values().removeIf(bucket -> bucket.get() - nowNanos <= 0);
+        } finally {
+            sweeping.set(false);
+        }
+    }
+}
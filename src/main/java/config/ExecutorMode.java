@@ -0,0 +1,13 @@
+package config;
+
+/**
+ * Threading model used by the HTTP server to run the request handlers
+ */
+public enum ExecutorMode {
+    // Handlers run on the single dispatcher thread of the JDK HTTP server
+    DISPATCHER,
+    // Handlers run on a bounded pool of platform threads
+    PLATFORM,
+    // Each request runs on its own virtual thread, requires a JDK with virtual thread support
+    VIRTUAL
+}
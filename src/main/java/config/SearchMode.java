@@ -0,0 +1,11 @@
+package config;
+
+/**
+ * Strategy used to query the airlines during a search
+ */
+public enum SearchMode {
+    // One blocking request after the other, latency is the sum of all airlines
+    SEQUENTIAL,
+    // All requests in flight at once, latency is bounded by the slowest airline or the deadline
+    PARALLEL
+}
@@ -0,0 +1,497 @@
+package config;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Server settings read from a set of properties, usually the JVM system properties.
+ * Each setting has a default so the server starts without any configuration.
+ * <p>Example: java -Dserver.executor=virtual -Dserver.backlog=256 -jar flight-reservation.jar
+ */
+public class ServerConfig {
+    private final Properties properties;
+
+    public ServerConfig(Properties properties) {
+        this.properties = properties;
+    }
+
+    public static ServerConfig fromSystemProperties() {
+        return new ServerConfig(System.getProperties());
+    }
+
+    public String getHost() {
+        return getString("server.host", "localhost");
+    }
+
+    public int getPort() {
+        return getInt("server.port", 8080);
+    }
+
+    /**
+     * Address of the listener serving the unauthenticated admin routes, which must only be
+     * reachable from the machine or a private network
+     */
+    public String getAdminHost() {
+        return getString("admin.host", "127.0.0.1");
+    }
+
+    public int getAdminPort() {
+        return getInt("admin.port", 8081);
+    }
+
+    /**
+     * Maximum number of queued incoming connections. 0 lets the system pick a default
+     */
+    public int getBacklog() {
+        return getInt("server.backlog", 0);
+    }
+
+    public ExecutorMode getExecutorMode() {
+        return ExecutorMode.valueOf(getString("server.executor", "platform")
+                .toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Number of platform threads running the handlers in {@link ExecutorMode#PLATFORM} mode
+     */
+    public int getWorkerThreads() {
+        return getInt("server.worker.threads", Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * Number of requests that may wait for a free platform thread. Further requests are
+     * refused with a 503 response by the load shedder thread. Defaults to the number of worker
+     * threads, so a request never waits for more than one request ahead of it on each thread.
+     */
+    public int getWorkerQueueCapacity() {
+        return getInt("server.worker.queue.capacity", getWorkerThreads());
+    }
+
+    /**
+     * Number of requests refused by the worker pool that may wait for the load shedder thread
+     * to answer them with a 503 response. Further requests have their connection closed.
+     */
+    public int getShedQueueCapacity() {
+        return getInt("server.shed.queue.capacity", 1000);
+    }
+
+    /**
+     * Refuses requests with a 503 response once too many are in flight. The limits protect
+     * the worker threads and the airlines behind them: searches and reservations may not take
+     * every worker thread, so the status and metrics routes and the refusals themselves
+     * still find a free thread, and a flood of searches cannot starve the reservations.
+     */
+    public boolean isAdmissionControlEnabled() {
+        return getBoolean("admission.enabled", true);
+    }
+
+    /**
+     * Maximum number of searches and reservations in flight on the whole server. Defaults to
+     * three quarters of the worker threads, keeping at least one thread for the other routes
+     */
+    public int getAdmissionMaxInFlight() {
+        int workerThreads = getWorkerThreads();
+        return getInt("admission.max.in.flight",
+                Math.max(1, workerThreads - Math.max(1, workerThreads / 4)));
+    }
+
+    /**
+     * Maximum number of searches in flight
+     */
+    public int getSearchMaxInFlight() {
+        return getInt("admission.search.max.in.flight", getAdmissionMaxInFlight());
+    }
+
+    /**
+     * Maximum number of reservations in flight, single and batch reservations together
+     */
+    public int getReservationMaxInFlight() {
+        return getInt("admission.reserve.max.in.flight", getAdmissionMaxInFlight());
+    }
+
+    /**
+     * Percentage of the server capacity searches may not use, kept for the reservations
+     */
+    public int getReservationReservedPercent() {
+        return getInt("admission.reserve.reserved.percent", 25);
+    }
+
+    /**
+     * Limits the rate of requests of each client with a token bucket
+     */
+    public boolean isRateLimitEnabled() {
+        return getBoolean("ratelimit.enabled", false);
+    }
+
+    /**
+     * Sustained number of requests per second allowed to a client, for searches and for
+     * reservations separately
+     */
+    public int getRateLimitRequestsPerSecond() {
+        return getInt("ratelimit.requests.per.second", 20);
+    }
+
+    /**
+     * Number of requests a client may send at once after being idle
+     */
+    public int getRateLimitBurst() {
+        return getInt("ratelimit.burst", 40);
+    }
+
+    /**
+     * Maximum number of clients whose rate is tracked separately
+     */
+    public int getRateLimitMaxClients() {
+        return getInt("ratelimit.max.clients", 100_000);
+    }
+
+    public SearchMode getSearchMode() {
+        return SearchMode.valueOf(getString("upstream.search.mode", "parallel")
+                .toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Longest time to wait for a single airline. Timeouts adapt to the observed latency of each
+     * airline but never exceed this value. Airlines of the airlines file can set their own
+     */
+    public Duration getAirlineTimeout() {
+        return getDuration("upstream.timeout.ms", Duration.ofSeconds(2));
+    }
+
+    /**
+     * Shortest timeout an airline can adapt down to
+     */
+    public Duration getMinimumAirlineTimeout() {
+        return getDuration("upstream.timeout.min.ms", Duration.ofMillis(200));
+    }
+
+    /**
+     * Maximum time a parallel search may take overall
+     */
+    public Duration getSearchDeadline() {
+        return getDuration("upstream.search.deadline.ms", Duration.ofSeconds(3));
+    }
+
+    /**
+     * Maximum time a search over a range of dates may take overall
+     */
+    public Duration getRangeSearchDeadline() {
+        return getDuration("upstream.range.deadline.ms", Duration.ofSeconds(10));
+    }
+
+    /**
+     * Maximum number of airline requests in flight for one search over a range of dates
+     */
+    public int getRangeSearchMaxConcurrency() {
+        return getInt("upstream.range.max.concurrency", 20);
+    }
+
+    /**
+     * Properties file listing the airlines, null to use the ten built-in local airlines
+     */
+    public String getAirlinesFile() {
+        return getString("upstream.airlines.file", null);
+    }
+
+    /**
+     * How often the airlines file is checked for changes
+     */
+    public Duration getAirlinesReloadInterval() {
+        return getDuration("upstream.airlines.reload.ms", Duration.ofSeconds(10));
+    }
+
+    /**
+     * HTTP version preferred with the airlines which do not set their own, 2 or 1.1
+     */
+    public String getUpstreamHttpVersion() {
+        return getString("upstream.http.version", "2");
+    }
+
+    /**
+     * Longest time to wait for a new connection to an airline
+     */
+    public Duration getUpstreamConnectTimeout() {
+        return getDuration("upstream.connect.timeout.ms", Duration.ofSeconds(1));
+    }
+
+    /**
+     * Maximum number of requests in flight to a single airline. Further requests to the same
+     * airline are skipped until one completes
+     */
+    public int getUpstreamMaxConcurrentRequests() {
+        return getInt("upstream.max.concurrent.requests", 64);
+    }
+
+    /**
+     * How long an idle connection to an airline is kept open for the next request. Shorter than
+     * the idle timeout of the airline servers, so the client does not reuse a connection the
+     * airline is closing
+     */
+    public Duration getUpstreamKeepAliveTimeout() {
+        return getDuration("upstream.keepalive.timeout.ms", Duration.ofSeconds(30));
+    }
+
+    /**
+     * Maximum number of idle HTTP/1.1 connections kept open to a single airline. 0 keeps them all
+     */
+    public int getUpstreamMaxIdleConnections() {
+        return getInt("upstream.pool.max.idle.connections", getUpstreamMaxConcurrentRequests());
+    }
+
+    /**
+     * Number of threads handling the answers of the airlines, shared by all the airlines
+     */
+    public int getUpstreamExecutorThreads() {
+        return getInt("upstream.executor.threads",
+                Math.max(2, Runtime.getRuntime().availableProcessors() * 2));
+    }
+
+    /**
+     * Number of airline answers that may wait for a free upstream thread. New airline calls
+     * fail without being sent while this many are waiting.
+     */
+    public int getUpstreamExecutorQueueCapacity() {
+        return getInt("upstream.executor.queue.capacity", 1000);
+    }
+
+    /**
+     * Number of connections opened to each airline at startup and when a reload adds it, before
+     * its first call. An airline answering over HTTP/2 needs a single one. 0 disables the
+     * warm-up
+     */
+    public int getUpstreamWarmUpConnections() {
+        return getInt("upstream.warmup.connections", 1);
+    }
+
+    /**
+     * Airport code the warm-up searches depart from
+     */
+    public String getUpstreamWarmUpOrigin() {
+        return getString("upstream.warmup.origin", "lax");
+    }
+
+    /**
+     * Airport code the warm-up searches arrive at
+     */
+    public String getUpstreamWarmUpDestination() {
+        return getString("upstream.warmup.destination", "sfo");
+    }
+
+    /**
+     * Sends a second search request to an airline which has not answered within its observed
+     * p95 latency, and keeps whichever answer comes first
+     */
+    public boolean isHedgingEnabled() {
+        return getBoolean("upstream.hedge.enabled", false);
+    }
+
+    /**
+     * Maximum number of hedged search requests per hundred search requests
+     */
+    public int getHedgeBudgetPercent() {
+        return getInt("upstream.hedge.budget.percent", 5);
+    }
+
+    /**
+     * Shortest wait before hedging, so airlines answering in a few milliseconds are not hedged
+     * on noise
+     */
+    public Duration getMinimumHedgeDelay() {
+        return getDuration("upstream.hedge.min.delay.ms", Duration.ofMillis(10));
+    }
+
+    /**
+     * Number of consecutive failed or slow calls opening the circuit breaker of an airline
+     */
+    public int getCircuitBreakerFailureThreshold() {
+        return getInt("breaker.failure.threshold", 5);
+    }
+
+    /**
+     * A call to an airline taking longer than this counts as a failure for its circuit breaker
+     */
+    public Duration getCircuitBreakerSlowCallThreshold() {
+        return getDuration("breaker.slow.call.ms", Duration.ofSeconds(1));
+    }
+
+    /**
+     * How long an open circuit breaker skips its airline before probing it again
+     */
+    public Duration getCircuitBreakerOpenDuration() {
+        return getDuration("breaker.open.ms", Duration.ofSeconds(10));
+    }
+
+    /**
+     * Size in bytes from which a search response is compressed for the clients accepting it
+     */
+    public int getSearchCompressionThreshold() {
+        return getInt("search.compression.min.bytes", 1024);
+    }
+
+    public boolean isSearchCacheEnabled() {
+        return getBoolean("cache.enabled", true);
+    }
+
+    /**
+     * How long the flights of a route and date are served from the cache
+     */
+    public Duration getSearchCacheTimeToLive() {
+        return getDuration("cache.ttl.ms", Duration.ofSeconds(30));
+    }
+
+    /**
+     * Maximum number of route and date combinations kept in the cache
+     */
+    public int getSearchCacheMaxEntries() {
+        return getInt("cache.max.entries", 10_000);
+    }
+
+    /**
+     * Serves searches from an inventory snapshot refreshed in the background instead of the
+     * search cache
+     */
+    public boolean isInventoryEnabled() {
+        return getBoolean("inventory.enabled", false);
+    }
+
+    /**
+     * Oldest flights of the inventory snapshot a search may return
+     */
+    public Duration getInventoryMaxStaleness() {
+        return getDuration("inventory.max.staleness.ms", Duration.ofMinutes(1));
+    }
+
+    /**
+     * How often the most queried routes of the inventory snapshot are refreshed
+     */
+    public Duration getInventoryRefreshInterval() {
+        return getDuration("inventory.refresh.interval.ms", Duration.ofSeconds(5));
+    }
+
+    /**
+     * Maximum number of routes and dates refreshed at each refresh
+     */
+    public int getInventoryRefreshBatchSize() {
+        return getInt("inventory.refresh.batch.size", 50);
+    }
+
+    /**
+     * Maximum number of route and date combinations kept in the inventory snapshot
+     */
+    public int getInventoryMaxEntries() {
+        return getInt("inventory.max.entries", 100_000);
+    }
+
+    /**
+     * Refuses reservations asking for more seats than a recent search returned, without calling
+     * the airline
+     */
+    public boolean isSeatLedgerEnabled() {
+        return getBoolean("ledger.enabled", true);
+    }
+
+    /**
+     * How long the seats returned by a search are trusted to refuse reservations
+     */
+    public Duration getSeatLedgerTimeToLive() {
+        return getDuration("ledger.ttl.ms", Duration.ofSeconds(30));
+    }
+
+    /**
+     * Maximum number of flights whose seats are tracked
+     */
+    public int getSeatLedgerMaxEntries() {
+        return getInt("ledger.max.entries", 100_000);
+    }
+
+    /**
+     * How long the confirmation of a reservation sent with an idempotency key is returned to
+     * retries with the same key
+     */
+    public Duration getIdempotencyKeyTimeToLive() {
+        return getDuration("idempotency.ttl.ms", Duration.ofHours(24));
+    }
+
+    /**
+     * Maximum number of idempotency keys remembered
+     */
+    public int getIdempotencyMaxKeys() {
+        return getInt("idempotency.max.keys", 100_000);
+    }
+
+    /**
+     * File the confirmed reservations sent with an idempotency key are appended to, so they
+     * survive a restart. Null to keep them in memory only
+     */
+    public String getIdempotencyJournalFile() {
+        return getString("idempotency.journal.file", null);
+    }
+
+    /**
+     * Directory of the journal recording every confirmed reservation, null to disable it
+     */
+    public String getReservationJournalDirectory() {
+        return getString("journal.dir", null);
+    }
+
+    /**
+     * Size from which the reservation journal starts a new segment file. Read as a long, and
+     * capped by the journal at 2 GB since its segments are memory mapped on replay.
+     */
+    public long getReservationJournalSegmentBytes() {
+        return getLong("journal.segment.bytes", 64L * 1024 * 1024);
+    }
+
+    /**
+     * Longest time a reservation waits for its journal record to be on disk. The reservation
+     * is confirmed anyway once it passes, and a failed record is written again in the background
+     */
+    public Duration getReservationJournalSyncTimeout() {
+        return getDuration("journal.sync.timeout.ms", Duration.ofSeconds(5));
+    }
+
+    /**
+     * File holding the valid authentication tokens, null to accept only the built-in tokens
+     */
+    public String getAuthenticationTokensFile() {
+        return getString("auth.tokens.file", null);
+    }
+
+    /**
+     * How often the authentication tokens file is checked for changes
+     */
+    public Duration getAuthenticationTokensReloadInterval() {
+        return getDuration("auth.tokens.reload.ms", Duration.ofSeconds(30));
+    }
+
+    private String getString(String key, String defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    private int getInt(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private long getLong(String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    private boolean getBoolean(String key, boolean defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * Reads a duration expressed in milliseconds
+     */
+    private Duration getDuration(String key, Duration defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.isBlank()
+                ? defaultValue
+                : Duration.ofMillis(Long.parseLong(value.trim()));
+    }
+}
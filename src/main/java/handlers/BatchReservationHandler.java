@@ -0,0 +1,155 @@
+package handlers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import logging.Level;
+import logging.RequestLogger;
+import model.ReservationResult;
+import model.TicketReservationRequest;
+import services.AirlinesService;
+import services.AuthenticationService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchReservationHandler implements HttpHandler {
+    private static final RequestLogger LOGGER = RequestLogger.get();
+    private static final int MAX_BATCH_SIZE = 50;
+    private static final TypeReference<List<TicketReservationRequest>> REQUESTS_TYPE =
+            new TypeReference<>() {
+            };
+
+    private final AirlinesService airlinesService;
+    private final ObjectMapper jacksonObjectMapper;
+    private final AuthenticationService authenticationService;
+
+    public BatchReservationHandler(AirlinesService airlinesService,
+                                   ObjectMapper jacksonObjectMapper,
+                                   AuthenticationService authenticationService) {
+        this.airlinesService = airlinesService;
+        this.jacksonObjectMapper = jacksonObjectMapper;
+        this.authenticationService = authenticationService;
+    }
+
+    /**
+     * Sends back an HTTP response to the server
+     *
+     * @param exchange     - Object indicating the exchange of HTTP request/response between
+     *                     client/server
+     * @param statusCode   - The HTTP response code to be included in the HTTP response
+     * @param responseBody - The body payload of the HTTP response
+     */
+    private static void sendResponse(HttpExchange exchange,
+                                     int statusCode,
+                                     String responseBody) throws IOException {
+        if (!responseBody.isBlank() && !responseBody.endsWith("\n")) {
+            responseBody += "\n";
+        }
+        exchange.sendResponseHeaders(statusCode, responseBody.getBytes().length);
+        OutputStream outputStream = exchange.getResponseBody();
+        outputStream.write(responseBody.getBytes());
+        outputStream.flush();
+        outputStream.close();
+    }
+
+    /**
+     * Handles HTTP POST requests to reserve several flights at once
+     * Each reservation succeeds or fails on its own, the response lists the outcome of each
+     * reservation in the order of the request. The whole request is refused when one of the
+     * reservations is null or asks for no ticket
+     * <p>An example of a valid request:
+     * <pre>
+     * [
+     *     {"id": 677885206, "airlineName": "Singapore Airlines", "numberOfTickets": 2},
+     *     {"id": 12345678, "airlineName": "Lufthansa", "numberOfTickets": 2}
+     * ]
+     * <pre>
+     * <p>An example of a response:
+     * <pre>
+     * [
+     *     {"id": 677885206, "airlineName": "Singapore Airlines", "confirmationNumber": 8472},
+     *     {"id": 12345678, "airlineName": "Lufthansa", "error": "Flight Reservation failed"}
+     * ]
+     * <pre>
+     */
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        LOGGER.request(Level.DEBUG, "/reserve/batch",
+                "Received request to reserve a batch of flights");
+        if (!exchange.getRequestMethod().equalsIgnoreCase("POST")) {
+            sendResponse(exchange, 405,
+                    "Use POST method for flight reservations");
+            return;
+        }
+
+        if (!authenticationService.check(exchange.getRequestHeaders().get("Cookie"))) {
+            sendResponse(exchange, 401, "Unauthorized User");
+            return;
+        }
+
+        if (!exchange.getRequestHeaders().containsKey("Content-Type")
+                || !exchange.getRequestHeaders().get("Content-Type").contains("application" +
+                "/json")) {
+            sendResponse(exchange, 415,
+                    "Request body is not in the JSON format");
+            return;
+        }
+
+        List<TicketReservationRequest> ticketReservationRequests;
+        try {
+            ticketReservationRequests = jacksonObjectMapper.readValue(
+                    exchange.getRequestBody().readAllBytes(), REQUESTS_TYPE);
+        } catch (JsonProcessingException e) {
+            sendResponse(exchange, 400,
+                    "Request body is not an array of flight reservations");
+            return;
+        }
+
+        if (ticketReservationRequests == null || ticketReservationRequests.isEmpty()) {
+            sendResponse(exchange, 400, "No flight reservations in the request");
+            return;
+        }
+        if (ticketReservationRequests.size() > MAX_BATCH_SIZE) {
+            sendResponse(exchange, 413,
+                    "At most " + MAX_BATCH_SIZE + " flight reservations per request");
+            return;
+        }
+        for (int i = 0; i < ticketReservationRequests.size(); i++) {
+            TicketReservationRequest ticketReservationRequest = ticketReservationRequests.get(i);
+            if (ticketReservationRequest == null) {
+                sendResponse(exchange, 400, "Flight reservation " + i + " is null");
+                return;
+            }
+            if (ticketReservationRequest.getNumberOfTickets() <= 0) {
+                sendResponse(exchange, 400,
+                        "Flight reservation " + i + " must reserve at least one ticket");
+                return;
+            }
+        }
+
+        List<Long> confirmationNumbers = airlinesService.reserveFlights(ticketReservationRequests);
+        List<ReservationResult> results = new ArrayList<>(ticketReservationRequests.size());
+        for (int i = 0; i < ticketReservationRequests.size(); i++) {
+            long confirmationNumber = confirmationNumbers.get(i);
+            if (confirmationNumber > 0) {
+                results.add(ReservationResult.confirmed(ticketReservationRequests.get(i),
+                        confirmationNumber));
+            } else if (confirmationNumber == AirlinesService.NOT_ENOUGH_SEATS) {
+                results.add(ReservationResult.failed(ticketReservationRequests.get(i),
+                        "Not enough seats available"));
+            } else {
+                results.add(ReservationResult.failed(ticketReservationRequests.get(i),
+                        "Flight Reservation failed"));
+            }
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        sendResponse(exchange, 200,
+                jacksonObjectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(results));
+    }
+}
@@ -0,0 +1,95 @@
+package handlers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import services.CircuitBreaker;
+import services.LatencyTracker;
+import services.RealAirlinesService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CircuitBreakerHandler implements HttpHandler {
+    private final RealAirlinesService airlinesService;
+    private final ObjectMapper jacksonObjectMapper;
+
+    public CircuitBreakerHandler(RealAirlinesService airlinesService,
+                                 ObjectMapper jacksonObjectMapper) {
+        this.airlinesService = airlinesService;
+        this.jacksonObjectMapper = jacksonObjectMapper;
+    }
+
+    /**
+     * Sends back an HTTP response to the server
+     *
+     * @param exchange     - Object indicating the exchange of HTTP request/response between
+     *                     client/server
+     * @param statusCode   - The HTTP response code to be included in the HTTP response
+     * @param responseBody - The body payload of the HTTP response
+     */
+    private static void sendResponse(HttpExchange exchange,
+                                     int statusCode,
+                                     String responseBody) throws IOException {
+        if (!responseBody.isBlank() && !responseBody.endsWith("\n")) {
+            responseBody += "\n";
+        }
+        exchange.sendResponseHeaders(statusCode, responseBody.getBytes().length);
+        OutputStream outputStream = exchange.getResponseBody();
+        outputStream.write(responseBody.getBytes());
+        outputStream.flush();
+        outputStream.close();
+    }
+
+    /**
+     * Handles HTTP GET requests for the circuit breaker state of each airline, together with
+     * the latency percentiles its timeout adapts to
+     * <p>An example of a response entry:
+     * <pre>
+     * {
+     *     "airline": "Lufthansa",
+     *     "state": "OPEN",
+     *     "consecutiveFailures": 5,
+     *     "rejectedCalls": 42,
+     *     "p50Millis": 21,
+     *     "p99Millis": 250
+     * }
+     * <pre>
+     */
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equalsIgnoreCase("GET")) {
+            sendResponse(exchange, 405,
+                    "Use GET method to read the circuit breakers");
+            return;
+        }
+
+        Map<String, LatencyTracker> latencyTrackers = airlinesService.getLatencyTrackers();
+        List<Map<String, Object>> airlines = new ArrayList<>();
+        for (Map.Entry<String, CircuitBreaker> entry
+                : airlinesService.getCircuitBreakers().entrySet()) {
+            CircuitBreaker circuitBreaker = entry.getValue();
+            LatencyTracker latencyTracker = latencyTrackers.get(entry.getKey());
+
+            Map<String, Object> airline = new LinkedHashMap<>();
+            airline.put("airline", entry.getKey());
+            airline.put("state", circuitBreaker.getState());
+            airline.put("consecutiveFailures", circuitBreaker.getConsecutiveFailures());
+            airline.put("rejectedCalls", circuitBreaker.getRejectedCalls());
+            airline.put("samples", latencyTracker.getCount());
+            airline.put("p50Millis", Duration.ofNanos(latencyTracker.getP50Nanos()).toMillis());
+            airline.put("p95Millis", Duration.ofNanos(latencyTracker.getP95Nanos()).toMillis());
+            airline.put("p99Millis", Duration.ofNanos(latencyTracker.getP99Nanos()).toMillis());
+            airlines.add(airline);
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        sendResponse(exchange, 200,
+                jacksonObjectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(airlines));
+    }
+}
@@ -0,0 +1,123 @@
+package handlers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression applied to a response body, negotiated from the Accept-Encoding request header
+ */
+enum ContentEncoding {
+    GZIP("gzip"),
+    DEFLATE("deflate"),
+    IDENTITY("identity");
+
+    private final String token;
+
+    ContentEncoding(String token) {
+        this.token = token;
+    }
+
+    /**
+     * @return - the value of the Content-Encoding header
+     */
+    String getToken() {
+        return token;
+    }
+
+    /**
+     * Picks the compression the client prefers, gzip over deflate when it has no preference.
+     * <p>Example: "gzip;q=0.5, deflate" picks deflate, "*;q=0" or no header picks identity
+     *
+     * @param acceptEncoding - Value of the Accept-Encoding header, may be null
+     */
+    static ContentEncoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return IDENTITY;
+        }
+        double gzipQuality = -1;
+        double deflateQuality = -1;
+        double anyQuality = -1;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = parseQuality(parts);
+            if (name.equals(GZIP.token) || name.equals("x-gzip")) {
+                gzipQuality = Math.max(gzipQuality, quality);
+            } else if (name.equals(DEFLATE.token)) {
+                deflateQuality = Math.max(deflateQuality, quality);
+            } else if (name.equals("*")) {
+                anyQuality = quality;
+            }
+        }
+        // A coding not listed takes the quality of the wildcard, if any
+        gzipQuality = gzipQuality < 0 ? anyQuality : gzipQuality;
+        deflateQuality = deflateQuality < 0 ? anyQuality : deflateQuality;
+        if (gzipQuality <= 0 && deflateQuality <= 0) {
+            return IDENTITY;
+        }
+        return gzipQuality >= deflateQuality ? GZIP : DEFLATE;
+    }
+
+    /**
+     * Compresses a whole body at once
+     */
+    byte[] encode(byte[] body) throws IOException {
+        if (this == IDENTITY) {
+            return body;
+        }
+        // Flight listings usually compress to a fifth of their size or less
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (OutputStream outputStream = wrap(encoded, false)) {
+            outputStream.write(body);
+        }
+        return encoded.toByteArray();
+    }
+
+    /**
+     * Wraps a response body stream so what is written to it gets compressed. Closing the
+     * returned stream finishes the compression and closes the given stream.
+     *
+     * @param syncFlush - true to make flush() send everything written so far, for responses
+     *                  streamed in parts
+     */
+    OutputStream wrap(OutputStream outputStream, boolean syncFlush) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(outputStream, 8192, syncFlush);
+            case DEFLATE:
+                // HTTP deflate is the zlib format, which is what Deflater writes by default
+                return new DeflaterOutputStream(outputStream, new Deflater(), 8192, syncFlush) {
+                    @Override
+                    public void close() throws IOException {
+                        super.close();
+                        def.end();
+                    }
+                };
+            case IDENTITY:
+            default:
+                return outputStream;
+        }
+    }
+
+    /**
+     * @return - the q parameter of an Accept-Encoding element, 1 if absent or malformed
+     */
+    private static double parseQuality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 1;
+                }
+            }
+        }
+        return 1;
+    }
+}
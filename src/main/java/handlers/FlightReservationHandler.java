@@ -3,31 +3,50 @@ package handlers;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import logging.Level;
+import logging.RequestLogger;
 import model.TicketReservationRequest;
 import services.AirlinesService;
 import services.AuthenticationService;
+import services.IdempotencyStore;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
 public class FlightReservationHandler implements HttpHandler {
+    private static final RequestLogger LOGGER = RequestLogger.get();
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
     private final AirlinesService airlinesService;
     private final ObjectMapper jacksonObjectMapper;
     private final AuthenticationService authenticationService;
+    private final IdempotencyStore idempotencyStore;
 
     public FlightReservationHandler(AirlinesService airlinesService, ObjectMapper objectMapper) {
         this.airlinesService = airlinesService;
         this.jacksonObjectMapper = objectMapper;
         this.authenticationService = null;
+        this.idempotencyStore = null;
     }
 
     public FlightReservationHandler(AirlinesService airlinesService,
                                     ObjectMapper jacksonObjectMapper,
                                     AuthenticationService authenticationService) {
+        this(airlinesService, jacksonObjectMapper, authenticationService, null);
+    }
+
+    /**
+     * @param idempotencyStore - Remembers the reservations sent with an Idempotency-Key header,
+     *                         or null to ignore the header
+     */
+    public FlightReservationHandler(AirlinesService airlinesService,
+                                    ObjectMapper jacksonObjectMapper,
+                                    AuthenticationService authenticationService,
+                                    IdempotencyStore idempotencyStore) {
         this.airlinesService = airlinesService;
         this.jacksonObjectMapper = jacksonObjectMapper;
         this.authenticationService = authenticationService;
+        this.idempotencyStore = idempotencyStore;
     }
 
     /**
@@ -55,6 +74,9 @@ public class FlightReservationHandler implements HttpHandler {
     /**
      * Handles HTTP POST requests to reserve a particular flight on particular date
      * Multiple tickets on the same flight may be purchased in one transaction
+     * <p>A request with an Idempotency-Key header is sent to the airline only once: retries
+     * with the same key and authentication token get the confirmation number of the first
+     * attempt, or wait for it if it is still in progress.
      * <p>An example of a valid request:
      * <pre>
      * {
@@ -66,7 +88,7 @@ public class FlightReservationHandler implements HttpHandler {
      */
     @Override
     public void handle(HttpExchange exchange) throws IOException {
-        System.out.println("Flight Reservation Server - Received request to reserve a flight");
+        LOGGER.request(Level.DEBUG, "/reserve", "Received request to reserve a flight");
         if (!exchange.getRequestMethod().equalsIgnoreCase("POST")) {
             sendResponse(exchange, 405,
                     "Use POST method for flight reservations");
@@ -86,15 +108,51 @@ public class FlightReservationHandler implements HttpHandler {
             return;
         }
 
-        long confirmationNumber = reserveTickets(exchange.getRequestBody());
+        String idempotencyKey = exchange.getRequestHeaders().getFirst(IDEMPOTENCY_KEY_HEADER);
+        long confirmationNumber;
+        if (idempotencyKey == null || idempotencyStore == null) {
+            confirmationNumber = reserveTickets(exchange.getRequestBody());
+        } else {
+            if (!IdempotencyStore.isValidKey(idempotencyKey)) {
+                sendResponse(exchange, 400, "Invalid Idempotency-Key header");
+                return;
+            }
+            TicketReservationRequest ticketReservationRequest = jacksonObjectMapper.readValue(
+                    exchange.getRequestBody().readAllBytes(), TicketReservationRequest.class);
+            String owner = authenticationService.findValidToken(
+                    exchange.getRequestHeaders().get("Cookie"));
+            IdempotencyStore.Outcome outcome = idempotencyStore.reserve(owner, idempotencyKey,
+                    fingerprintOf(ticketReservationRequest),
+                    () -> airlinesService.reserveFlight(ticketReservationRequest));
+            if (outcome.isConflict()) {
+                sendResponse(exchange, 422,
+                        "Idempotency-Key already used for a different reservation");
+                return;
+            }
+            if (outcome.isReplayed()) {
+                exchange.getResponseHeaders().set("Idempotent-Replayed", "true");
+            }
+            confirmationNumber = outcome.getConfirmationNumber();
+        }
+
         if (confirmationNumber > 0) {
             exchange.getResponseHeaders().set("Content-Type", "text/plain");
             sendResponse(exchange, 200, String.valueOf(confirmationNumber));
+        } else if (confirmationNumber == AirlinesService.NOT_ENOUGH_SEATS) {
+            sendResponse(exchange, 409, "Not enough seats available");
         } else {
             sendResponse(exchange, 500, "Flight Reservation failed");
         }
     }
 
+    /**
+     * Identifies a reservation, so a key reused with another reservation is refused
+     */
+    private static String fingerprintOf(TicketReservationRequest ticketReservationRequest) {
+        return ticketReservationRequest.getAirlineName() + "/" + ticketReservationRequest.getId()
+                + "/" + ticketReservationRequest.getNumberOfTickets();
+    }
+
     /**
      * Reads and parses the request body stream into a JSON object.
      * Calls the {@link AirlinesService#reserveFlight(TicketReservationRequest)} method to book
@@ -0,0 +1,193 @@
+package handlers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import logging.Level;
+import logging.RequestLogger;
+import metrics.LatencyHistogram;
+import metrics.MetricsRegistry;
+import model.Flight;
+import model.FlightsWrapper;
+import model.SearchFilter;
+import services.AirlinesService;
+import services.FlightSearches;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Streams the flights of a search as Server-Sent Events, each flight as soon as its airline
+ * answers, instead of waiting for the slowest airline like /search does
+ */
+public class FlightSearchStreamHandler implements HttpHandler {
+    private static final RequestLogger LOGGER = RequestLogger.get();
+    private static final String ROUTE = "/search/stream";
+    private static final String EVENT_STREAM_TYPE = "text/event-stream";
+    private static final byte[] FLIGHT_EVENT = "event: flight\ndata: "
+            .getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SUMMARY_EVENT = "event: summary\ndata: "
+            .getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EVENT_END = "\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final AirlinesService airlinesService;
+    private final ObjectWriter flightWriter;
+    private final ObjectWriter flightsWriter;
+    private final LatencyHistogram timeToFirstFlight;
+
+    public FlightSearchStreamHandler(AirlinesService airlinesService,
+                                     ObjectMapper jacksonObjectMapper,
+                                     MetricsRegistry metricsRegistry) {
+        this.airlinesService = airlinesService;
+        this.flightWriter = jacksonObjectMapper.writerFor(Flight.class);
+        this.flightsWriter = jacksonObjectMapper.writerFor(FlightsWrapper.class);
+        this.timeToFirstFlight = metricsRegistry.histogram(
+                "search_stream_time_to_first_flight_seconds",
+                "Time from a streamed search request to its first flight event");
+    }
+
+    /**
+     * Sends back an HTTP response to the server
+     *
+     * @param exchange     - Object indicating the exchange of HTTP request/response between
+     *                     client/server
+     * @param statusCode   - The HTTP response code to be included in the HTTP response
+     * @param responseBody - The body payload of the HTTP response
+     */
+    private static void sendResponse(HttpExchange exchange,
+                                     int statusCode,
+                                     String responseBody) throws IOException {
+        if (!responseBody.isBlank() && !responseBody.endsWith("\n")) {
+            responseBody += "\n";
+        }
+        exchange.sendResponseHeaders(statusCode, responseBody.getBytes().length);
+        OutputStream outputStream = exchange.getResponseBody();
+        outputStream.write(responseBody.getBytes());
+        outputStream.flush();
+        outputStream.close();
+    }
+
+    /**
+     * Handles HTTP GET requests to search for available flights at a certain date, taking the
+     * same parameters as /search
+     *
+     * <p>Example a valid request:
+     * http://127.0.0.1:8080/search/stream?origin=lax&destination=sfo&day=03&month=12&year=2023
+     * <p>Each matching flight is sent in a flight event as soon as its airline answers, in the
+     * order the airlines answer. A summary event then carries the final answer, the flights
+     * from the cheapest to the most expensive with the limit parameter applied:
+     * <pre>
+     * event: flight
+     * data: {"id":3,"airlineName":"JetBlue","priceUSD":250.0,...}
+     *
+     * event: summary
+     * data: {"flights":[...]}
+     * </pre>
+     */
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        long startNanos = System.nanoTime();
+        LOGGER.request(Level.DEBUG, ROUTE, "Received request to stream flights");
+        if (!exchange.getRequestMethod().equalsIgnoreCase("GET")) {
+            sendResponse(exchange, 405,
+                    "Use GET method to search for flights");
+            return;
+        }
+
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        if (accept != null && !accept.contains(EVENT_STREAM_TYPE) && !accept.contains("*/*")) {
+            sendResponse(exchange, 406,
+                    "Client needs to support the " + EVENT_STREAM_TYPE + " response format");
+            return;
+        }
+
+        Map<String, String> parameters =
+                FlightSearchHandler.parseQueryParameters(exchange.getRequestURI());
+        SearchFilter filter;
+        try {
+            filter = FlightSearchHandler.parseSearchFilter(parameters);
+        } catch (IllegalArgumentException e) {
+            sendResponse(exchange, 400,
+                    "The maxPrice, minSeats, minFreeBags and limit parameters must be "
+                            + "non-negative numbers");
+            return;
+        }
+        if (FlightSearchHandler.checkMissingParameters(parameters)) {
+            sendResponse(exchange, 400,
+                    "One of the URL parameters is missing");
+            return;
+        }
+        LocalDate date = FlightSearchHandler.parseDate(parameters);
+
+        exchange.getResponseHeaders().set("Content-Type", EVENT_STREAM_TYPE);
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            EventWriter eventWriter = new EventWriter(outputStream, startNanos);
+            List<Flight> flights = FlightSearches.findFlights(airlinesService,
+                    parameters.get("origin"),
+                    parameters.get("destination"),
+                    date,
+                    Optional.ofNullable(exchange.getRequestHeaders().getFirst("Referer")),
+                    filter,
+                    eventWriter::writeFlight);
+            eventWriter.writeSummary(flights);
+        }
+    }
+
+    /**
+     * Writes the events of one response. A client gone away stops the writes but not the
+     * search, whose result may be shared with other requests.
+     */
+    private class EventWriter {
+        private final OutputStream outputStream;
+        private final long startNanos;
+        private boolean firstFlightSent;
+        private IOException failure;
+
+        private EventWriter(OutputStream outputStream, long startNanos) {
+            this.outputStream = outputStream;
+            this.startNanos = startNanos;
+        }
+
+        private void writeFlight(Flight flight) {
+            if (writeEvent(FLIGHT_EVENT, flightWriter, flight) && !firstFlightSent) {
+                firstFlightSent = true;
+                timeToFirstFlight.recordNanos(System.nanoTime() - startNanos);
+            }
+        }
+
+        private void writeSummary(List<Flight> flights) throws IOException {
+            writeEvent(SUMMARY_EVENT, flightsWriter, new FlightsWrapper(flights));
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        /**
+         * @return - true if the event reached the client
+         */
+        private boolean writeEvent(byte[] event, ObjectWriter writer, Object data) {
+            if (failure != null) {
+                return false;
+            }
+            try {
+                outputStream.write(event);
+                // Compact JSON has no line breaks, so the data fits on a single data line
+                outputStream.write(writer.writeValueAsBytes(data));
+                outputStream.write(EVENT_END);
+                outputStream.flush();
+                return true;
+            } catch (IOException e) {
+                failure = e;
+                return false;
+            }
+        }
+    }
+}
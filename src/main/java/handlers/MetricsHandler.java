@@ -0,0 +1,40 @@
+package handlers;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+public class MetricsHandler implements HttpHandler {
+    private final MetricsRegistry metricsRegistry;
+
+    public MetricsHandler(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /**
+     * Handles HTTP GET requests for the server metrics in the Prometheus text format
+     */
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equalsIgnoreCase("GET")) {
+            byte[] responseBody = "Use GET method to read the metrics\n"
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(405, responseBody.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(responseBody);
+            }
+            return;
+        }
+
+        byte[] responseBody = metricsRegistry.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+        exchange.sendResponseHeaders(200, responseBody.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(responseBody);
+        }
+    }
+}
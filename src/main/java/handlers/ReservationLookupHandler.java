@@ -0,0 +1,98 @@
+package handlers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import journal.JournalEntry;
+import journal.ReservationJournal;
+import logging.RequestLogger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Optional;
+
+public class ReservationLookupHandler implements HttpHandler {
+    private static final String CONFIRMATION_NUMBER_PARAMETER_NAME = "confirmationNumber";
+    private static final RequestLogger LOGGER = RequestLogger.get();
+
+    private final ReservationJournal reservationJournal;
+    private final ObjectMapper jacksonObjectMapper;
+
+    public ReservationLookupHandler(ReservationJournal reservationJournal,
+                                    ObjectMapper jacksonObjectMapper) {
+        this.reservationJournal = reservationJournal;
+        this.jacksonObjectMapper = jacksonObjectMapper;
+    }
+
+    /**
+     * Sends back an HTTP response to the server
+     *
+     * @param exchange     - Object indicating the exchange of HTTP request/response between
+     *                     client/server
+     * @param statusCode   - The HTTP response code to be included in the HTTP response
+     * @param responseBody - The body payload of the HTTP response
+     */
+    private static void sendResponse(HttpExchange exchange,
+                                     int statusCode,
+                                     String responseBody) throws IOException {
+        if (!responseBody.isBlank() && !responseBody.endsWith("\n")) {
+            responseBody += "\n";
+        }
+        exchange.sendResponseHeaders(statusCode, responseBody.getBytes().length);
+        OutputStream outputStream = exchange.getResponseBody();
+        outputStream.write(responseBody.getBytes());
+        outputStream.flush();
+        outputStream.close();
+    }
+
+    /**
+     * Handles HTTP GET requests for a journaled reservation by its confirmation number
+     * <p>An example of a valid request:
+     * GET /admin/reservations?confirmationNumber=8472
+     * <p>An example of a response:
+     * <pre>
+     * {
+     *     "confirmationNumber": 8472,
+     *     "airlineName": "Singapore Airlines",
+     *     "flightId": 677885206,
+     *     "numberOfTickets": 2,
+     *     "reservedAtMillis": 1701561600000
+     * }
+     * <pre>
+     */
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equalsIgnoreCase("GET")) {
+            sendResponse(exchange, 405, "Use GET method to read a reservation");
+            return;
+        }
+
+        Map<String, String> parameters =
+                FlightSearchHandler.parseQueryParameters(exchange.getRequestURI());
+        long confirmationNumber;
+        try {
+            confirmationNumber =
+                    Long.parseLong(parameters.get(CONFIRMATION_NUMBER_PARAMETER_NAME));
+        } catch (NumberFormatException e) {
+            sendResponse(exchange, 400, "Invalid or missing confirmationNumber parameter");
+            return;
+        }
+
+        Optional<JournalEntry> reservation;
+        try {
+            reservation = reservationJournal.find(confirmationNumber);
+        } catch (IOException e) {
+            LOGGER.error("Could not read reservation " + confirmationNumber, e);
+            sendResponse(exchange, 500, "Could not read the reservation from the journal");
+            return;
+        }
+        if (reservation.isEmpty()) {
+            sendResponse(exchange, 404, "No reservation with this confirmation number");
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        sendResponse(exchange, 200, jacksonObjectMapper.writerWithDefaultPrettyPrinter()
+                .writeValueAsString(reservation.get()));
+    }
+}
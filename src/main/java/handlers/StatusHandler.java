@@ -2,18 +2,21 @@ package handlers;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import logging.Level;
+import logging.RequestLogger;
 
 import java.io.IOException;
 import java.io.OutputStream;
 
 public class StatusHandler implements HttpHandler {
+    private static final RequestLogger LOGGER = RequestLogger.get();
 
     /**
      * Handles HTTP requests to check if the server is alive
      */
     @Override
     public void handle(HttpExchange exchange) throws IOException {
-        System.out.println("Flight Reservation Server - Status Request received");
+        LOGGER.request(Level.DEBUG, "/status", "Status Request received");
         String responseMessage = "Server is online";
         sendResponse(exchange, 200, responseMessage);
     }
@@ -0,0 +1,474 @@
+package inventory;
+
+import model.Flight;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory copy of the flights of the routes and dates searched recently, with how often each
+ * of them is queried so the hottest ones can be refreshed ahead of their staleness.
+ * <p>Everything is kept in parallel primitive arrays rather than in maps of objects:
+ * <ul>
+ *     <li>Airports and airlines are numbered once, so a route and date packs into a long key
+ *     indexing its day, and an airline and flight id into a long key indexing its flight</li>
+ *     <li>Each day holds one chain of flight slots, one flight per airline</li>
+ *     <li>Slots of replaced flights and removed days are reused, and so are the ids of airports
+ *     no day refers to anymore</li>
+ * </ul>
+ * Reads share a lock and writes take it exclusively.
+ */
+public class InventorySnapshot {
+    private static final int NONE = -1;
+    private static final int AIRPORT_BITS = 19;
+    private static final int EPOCH_DAY_BITS = 24;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private final int maxDays;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Airport codes are lower case, airline names are kept as received
+    private final Map<String, Integer> airportIds = new HashMap<>();
+    // Null for the ids which were freed
+    private final List<String> airportCodes = new ArrayList<>();
+    // Number of days whose route starts or ends at each airport
+    private int[] airportDays = new int[64];
+    private int[] freeAirports = new int[64];
+    private int freeAirportCount;
+    private final Map<String, Integer> airlineIds = new HashMap<>();
+    private final List<String> airlineNames = new ArrayList<>();
+
+    private final LongIntHashTable dayIndex;
+    private long[] dayKeys;
+    private long[] dayRefreshedAtNanos;
+    private int[] dayFirstFlight;
+    private AtomicIntegerArray dayQueries;
+    private int dayCount;
+    private int[] freeDays;
+    private int freeDayCount;
+
+    private final LongIntHashTable flightIndex;
+    private int[] flightIds;
+    private int[] flightAirlines;
+    private long[] flightPriceCents;
+    private int[] flightFreeBags;
+    private int[] flightSeats;
+    private int[] flightEpochDays;
+    private int[] flightNext;
+    private int flightCount;
+    private int firstFreeFlight = NONE;
+
+    /**
+     * @param maxDays - Maximum number of route and date combinations kept
+     */
+    public InventorySnapshot(int maxDays) {
+        this.maxDays = maxDays;
+        int initialDays = Math.min(maxDays, 1024);
+        this.dayIndex = new LongIntHashTable(initialDays);
+        this.dayKeys = new long[initialDays];
+        this.dayRefreshedAtNanos = new long[initialDays];
+        this.dayFirstFlight = new int[initialDays];
+        this.dayQueries = new AtomicIntegerArray(initialDays);
+        this.freeDays = new int[initialDays];
+
+        int initialFlights = initialDays * 4;
+        this.flightIndex = new LongIntHashTable(initialFlights);
+        this.flightIds = new int[initialFlights];
+        this.flightAirlines = new int[initialFlights];
+        this.flightPriceCents = new long[initialFlights];
+        this.flightFreeBags = new int[initialFlights];
+        this.flightSeats = new int[initialFlights];
+        this.flightEpochDays = new int[initialFlights];
+        this.flightNext = new int[initialFlights];
+    }
+
+    /**
+     * Counts a query of the route and date, then returns its flights if they were refreshed
+     * recently enough
+     *
+     * @param maxAgeNanos - Oldest snapshot acceptable
+     * @return - the flights in the order they were stored, or null if the route and date is not
+     * in the snapshot or is too old
+     */
+    public List<Flight> getIfFresh(String origin, String destination, LocalDate date,
+                                   long maxAgeNanos) {
+        lock.readLock().lock();
+        try {
+            long dayKey = dayKey(origin, destination, date);
+            int day = dayKey == NONE ? NONE : dayIndex.get(dayKey);
+            if (day == NONE) {
+                return null;
+            }
+            dayQueries.incrementAndGet(day);
+            if (System.nanoTime() - dayRefreshedAtNanos[day] > maxAgeNanos) {
+                return null;
+            }
+            List<Flight> flights = new ArrayList<>();
+            for (int flight = dayFirstFlight[day]; flight != NONE; flight = flightNext[flight]) {
+                flights.add(toFlight(flight));
+            }
+            return flights;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the flights of a route and date. A new route and date counts as queried once.
+     * Nothing is stored when the snapshot is full.
+     */
+    public void put(String origin, String destination, LocalDate date, List<Flight> flights) {
+        lock.writeLock().lock();
+        try {
+            int originId = assignAirportId(origin);
+            int destinationId = assignAirportId(destination);
+            long dayKey = dayKey(originId, destinationId, date);
+            int day = dayKey == NONE ? NONE : dayIndex.get(dayKey);
+            if (day == NONE) {
+                day = dayKey == NONE ? NONE : allocateDay(dayKey);
+                if (day == NONE) {
+                    freeAirportIfUnused(originId);
+                    freeAirportIfUnused(destinationId);
+                    return;
+                }
+            } else {
+                releaseFlights(day);
+            }
+            // Prepending in reverse keeps the flights in their original order
+            for (int i = flights.size() - 1; i >= 0; i--) {
+                addFlight(day, flights.get(i));
+            }
+            dayRefreshedAtNanos[day] = System.nanoTime();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Takes seats off a stored flight after a reservation, so the snapshot stays accurate until
+     * its next refresh
+     *
+     * @return - false if the flight is not in the snapshot
+     */
+    public boolean reserveSeats(String airline, int flightId, int numberOfSeats) {
+        lock.writeLock().lock();
+        try {
+            Integer airlineId = airlineIds.get(airline);
+            int flight = airlineId == null
+                    ? NONE
+                    : flightIndex.get(flightKey(airlineId, flightId));
+            if (flight == NONE) {
+                return false;
+            }
+            flightSeats[flight] = Math.max(0, flightSeats[flight] - numberOfSeats);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Picks the most queried routes and dates due for a refresh, then halves every query count
+     * so the ranking follows recent traffic. Routes and dates in the past, and those no longer
+     * queried whose flights are older than the eviction age, are removed.
+     *
+     * @param maxRoutes          - Maximum number of routes and dates to return
+     * @param refreshAfterNanos  - Age from which a route and date is due for a refresh
+     * @param evictAfterNanos    - Age from which a route and date no longer queried is removed
+     * @param today              - First date still worth refreshing
+     * @return - the routes and dates to refresh, most queried first
+     */
+    public List<RouteDate> selectRoutesToRefresh(int maxRoutes, long refreshAfterNanos,
+                                                 long evictAfterNanos, LocalDate today) {
+        lock.writeLock().lock();
+        try {
+            long nowNanos = System.nanoTime();
+            long todayEpochDay = today.toEpochDay();
+            // Each candidate is its query count in the high bits and its day in the low bits
+            long[] candidates = new long[dayCount];
+            int candidateCount = 0;
+            for (int day = 0; day < dayCount; day++) {
+                if (dayKeys[day] == NONE) {
+                    continue;
+                }
+                int queries = dayQueries.get(day);
+                long ageNanos = nowNanos - dayRefreshedAtNanos[day];
+                if (epochDayOf(dayKeys[day]) < todayEpochDay
+                        || (queries == 0 && ageNanos > evictAfterNanos)) {
+                    removeDay(day);
+                    continue;
+                }
+                if (queries > 0 && ageNanos > refreshAfterNanos) {
+                    candidates[candidateCount++] = ((long) queries << 32) | day;
+                }
+                dayQueries.set(day, queries / 2);
+            }
+            Arrays.sort(candidates, 0, candidateCount);
+
+            List<RouteDate> routes = new ArrayList<>(Math.min(maxRoutes, candidateCount));
+            for (int i = candidateCount - 1; i >= 0 && routes.size() < maxRoutes; i--) {
+                routes.add(toRouteDate((int) candidates[i]));
+            }
+            return routes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return - the number of routes and dates in the snapshot
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return dayIndex.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Flight toFlight(int flight) {
+        int epochDay = flightEpochDays[flight];
+        return Flight.ofPriceCents(flightIds[flight],
+                airlineNames.get(flightAirlines[flight]),
+                flightPriceCents[flight],
+                flightFreeBags[flight],
+                flightSeats[flight],
+                epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay));
+    }
+
+    private RouteDate toRouteDate(int day) {
+        long dayKey = dayKeys[day];
+        return new RouteDate(airportCodes.get(originIdOf(dayKey)),
+                airportCodes.get(destinationIdOf(dayKey)),
+                LocalDate.ofEpochDay(epochDayOf(dayKey)));
+    }
+
+    private int allocateDay(long dayKey) {
+        int day;
+        if (freeDayCount > 0) {
+            day = freeDays[--freeDayCount];
+        } else if (dayCount < maxDays) {
+            if (dayCount == dayKeys.length) {
+                growDays(Math.min(maxDays, dayKeys.length * 2));
+            }
+            day = dayCount++;
+        } else {
+            return NONE;
+        }
+        dayIndex.put(dayKey, day);
+        dayKeys[day] = dayKey;
+        airportDays[originIdOf(dayKey)]++;
+        airportDays[destinationIdOf(dayKey)]++;
+        dayFirstFlight[day] = NONE;
+        dayQueries.set(day, 1);
+        return day;
+    }
+
+    private void removeDay(int day) {
+        releaseFlights(day);
+        long dayKey = dayKeys[day];
+        dayIndex.remove(dayKey);
+        airportDays[originIdOf(dayKey)]--;
+        airportDays[destinationIdOf(dayKey)]--;
+        freeAirportIfUnused(originIdOf(dayKey));
+        freeAirportIfUnused(destinationIdOf(dayKey));
+        dayKeys[day] = NONE;
+        dayQueries.set(day, 0);
+        freeDays[freeDayCount++] = day;
+    }
+
+    private void addFlight(int day, Flight flight) {
+        int airlineId = assignAirlineId(flight.getAirlineName());
+        int slot;
+        if (firstFreeFlight != NONE) {
+            slot = firstFreeFlight;
+            firstFreeFlight = flightNext[slot];
+        } else {
+            if (flightCount == flightIds.length) {
+                growFlights(flightIds.length * 2);
+            }
+            slot = flightCount++;
+        }
+        flightIds[slot] = flight.getId();
+        flightAirlines[slot] = airlineId;
+        flightPriceCents[slot] = flight.getPriceCents();
+        flightFreeBags[slot] = flight.getNumberOfFreeBags();
+        flightSeats[slot] = flight.getNumberOfAvailableSeats();
+        flightEpochDays[slot] = flight.getDate() == null
+                ? NO_DATE
+                : (int) flight.getDate().toEpochDay();
+        flightNext[slot] = dayFirstFlight[day];
+        dayFirstFlight[day] = slot;
+        flightIndex.put(flightKey(airlineId, flight.getId()), slot);
+    }
+
+    private void releaseFlights(int day) {
+        int flight = dayFirstFlight[day];
+        while (flight != NONE) {
+            int next = flightNext[flight];
+            long flightKey = flightKey(flightAirlines[flight], flightIds[flight]);
+            // The same flight may since have been stored again for another day
+            if (flightIndex.get(flightKey) == flight) {
+                flightIndex.remove(flightKey);
+            }
+            flightNext[flight] = firstFreeFlight;
+            firstFreeFlight = flight;
+            flight = next;
+        }
+        dayFirstFlight[day] = NONE;
+    }
+
+    private void growDays(int capacity) {
+        dayKeys = Arrays.copyOf(dayKeys, capacity);
+        dayRefreshedAtNanos = Arrays.copyOf(dayRefreshedAtNanos, capacity);
+        dayFirstFlight = Arrays.copyOf(dayFirstFlight, capacity);
+        freeDays = Arrays.copyOf(freeDays, capacity);
+        AtomicIntegerArray queries = new AtomicIntegerArray(capacity);
+        for (int day = 0; day < dayQueries.length(); day++) {
+            queries.set(day, dayQueries.get(day));
+        }
+        dayQueries = queries;
+    }
+
+    private void growFlights(int capacity) {
+        flightIds = Arrays.copyOf(flightIds, capacity);
+        flightAirlines = Arrays.copyOf(flightAirlines, capacity);
+        flightPriceCents = Arrays.copyOf(flightPriceCents, capacity);
+        flightFreeBags = Arrays.copyOf(flightFreeBags, capacity);
+        flightSeats = Arrays.copyOf(flightSeats, capacity);
+        flightEpochDays = Arrays.copyOf(flightEpochDays, capacity);
+        flightNext = Arrays.copyOf(flightNext, capacity);
+    }
+
+    /**
+     * @return - the key of a route and date already known, or {@link #NONE} otherwise
+     */
+    private long dayKey(String origin, String destination, LocalDate date) {
+        Integer originId = airportIds.get(origin.toLowerCase(Locale.ROOT));
+        Integer destinationId = airportIds.get(destination.toLowerCase(Locale.ROOT));
+        if (originId == null || destinationId == null) {
+            return NONE;
+        }
+        return dayKey(originId, destinationId, date);
+    }
+
+    /**
+     * Packs a route and date into a positive long: 19 bits per airport and 24 bits of epoch day
+     *
+     * @return - the key or {@link #NONE} if an airport has no id or the date cannot be packed
+     */
+    private static long dayKey(int originId, int destinationId, LocalDate date) {
+        long epochDay = date.toEpochDay();
+        if (originId == NONE || destinationId == NONE
+                || epochDay < 0 || epochDay >= 1 << EPOCH_DAY_BITS) {
+            return NONE;
+        }
+        return ((long) originId << (AIRPORT_BITS + EPOCH_DAY_BITS))
+                | ((long) destinationId << EPOCH_DAY_BITS)
+                | epochDay;
+    }
+
+    private static int originIdOf(long dayKey) {
+        return (int) (dayKey >>> (AIRPORT_BITS + EPOCH_DAY_BITS));
+    }
+
+    private static int destinationIdOf(long dayKey) {
+        return (int) (dayKey >>> EPOCH_DAY_BITS) & ((1 << AIRPORT_BITS) - 1);
+    }
+
+    private static long epochDayOf(long dayKey) {
+        return dayKey & ((1 << EPOCH_DAY_BITS) - 1);
+    }
+
+    private static long flightKey(int airlineId, int flightId) {
+        return ((long) airlineId << 32) | (flightId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Reuses the id of an airport no day refers to anymore before taking a new one. An airport
+     * gets an id when a route and date is stored, and loses it when its last day is removed.
+     *
+     * @return - the id of the airport, or {@link #NONE} once all the ids are taken
+     */
+    private int assignAirportId(String airport) {
+        String code = airport.toLowerCase(Locale.ROOT);
+        Integer id = airportIds.get(code);
+        if (id != null) {
+            return id;
+        }
+        int newId;
+        if (freeAirportCount > 0) {
+            newId = freeAirports[--freeAirportCount];
+            airportCodes.set(newId, code);
+        } else if (airportCodes.size() < 1 << AIRPORT_BITS) {
+            newId = airportCodes.size();
+            airportCodes.add(code);
+            if (newId == airportDays.length) {
+                airportDays = Arrays.copyOf(airportDays, airportDays.length * 2);
+                freeAirports = Arrays.copyOf(freeAirports, freeAirports.length * 2);
+            }
+        } else {
+            return NONE;
+        }
+        airportIds.put(code, newId);
+        return newId;
+    }
+
+    /**
+     * Frees the id of an airport once no day refers to it
+     */
+    private void freeAirportIfUnused(int id) {
+        if (id == NONE || airportDays[id] > 0 || airportCodes.get(id) == null) {
+            return;
+        }
+        airportIds.remove(airportCodes.get(id));
+        airportCodes.set(id, null);
+        freeAirports[freeAirportCount++] = id;
+    }
+
+    private int assignAirlineId(String airline) {
+        Integer id = airlineIds.get(airline);
+        if (id != null) {
+            return id;
+        }
+        airlineIds.put(airline, airlineNames.size());
+        airlineNames.add(airline);
+        return airlineNames.size() - 1;
+    }
+
+    /**
+     * A route and date of the snapshot
+     */
+    public static class RouteDate {
+        private final String origin;
+        private final String destination;
+        private final LocalDate date;
+
+        private RouteDate(String origin, String destination, LocalDate date) {
+            this.origin = origin;
+            this.destination = destination;
+            this.date = date;
+        }
+
+        public String getOrigin() {
+            return origin;
+        }
+
+        public String getDestination() {
+            return destination;
+        }
+
+        public LocalDate getDate() {
+            return date;
+        }
+    }
+}
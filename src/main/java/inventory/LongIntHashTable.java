@@ -0,0 +1,113 @@
+package inventory;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash table from a long key to a non-negative int, without boxing either.
+ * <p>Uses linear probing and removes entries by shifting the following entries back, so the
+ * table never fills up with tombstones. Not thread safe.
+ */
+final class LongIntHashTable {
+    static final int MISSING = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    LongIntHashTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * @return - the value of the key or {@link #MISSING}
+     */
+    int get(long key) {
+        for (int slot = slotOf(key); ; slot = (slot + 1) & mask) {
+            if (values[slot] == MISSING) {
+                return MISSING;
+            }
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+    }
+
+    /**
+     * @param value - Non-negative value replacing the current value of the key
+     */
+    void put(long key, int value) {
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        int slot = slotOf(key);
+        while (values[slot] != MISSING && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (values[slot] == MISSING) {
+            size++;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+    }
+
+    /**
+     * @return - the removed value or {@link #MISSING} if the key was not present
+     */
+    int remove(long key) {
+        int slot = slotOf(key);
+        while (values[slot] != MISSING && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        int removedValue = values[slot];
+        if (removedValue == MISSING) {
+            return MISSING;
+        }
+        size--;
+
+        // Moves back every following entry which would no longer be reachable from its own slot
+        int gap = slot;
+        for (int next = (gap + 1) & mask; values[next] != MISSING; next = (next + 1) & mask) {
+            int home = slotOf(keys[next]);
+            boolean reachableWithoutGap = gap <= next
+                    ? gap < home && home <= next
+                    : gap < home || home <= next;
+            if (!reachableWithoutGap) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        values[gap] = MISSING;
+        return removedValue;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int slotOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldValues[slot] != MISSING) {
+                put(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package journal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A confirmed reservation as recorded by the {@link ReservationJournal}
+ * <p>Binary layout, big endian:
+ * <pre>
+ * long  confirmationNumber
+ * long  reservedAtMillis
+ * int   flightId
+ * int   numberOfTickets
+ * short airlineName length in bytes
+ * byte[] airlineName in UTF-8
+ * </pre>
+ */
+public class JournalEntry {
+    private static final int FIXED_SIZE = Long.BYTES * 2 + Integer.BYTES * 2 + Short.BYTES;
+    private static final int MAX_AIRLINE_NAME_BYTES = Short.MAX_VALUE;
+
+    private final long confirmationNumber;
+    private final String airlineName;
+    private final int flightId;
+    private final int numberOfTickets;
+    private final long reservedAtMillis;
+
+    public JournalEntry(long confirmationNumber, String airlineName, int flightId,
+                        int numberOfTickets, long reservedAtMillis) {
+        this.confirmationNumber = confirmationNumber;
+        this.airlineName = airlineName == null ? "" : airlineName;
+        this.flightId = flightId;
+        this.numberOfTickets = numberOfTickets;
+        this.reservedAtMillis = reservedAtMillis;
+    }
+
+    public long getConfirmationNumber() {
+        return confirmationNumber;
+    }
+
+    public String getAirlineName() {
+        return airlineName;
+    }
+
+    public int getFlightId() {
+        return flightId;
+    }
+
+    public int getNumberOfTickets() {
+        return numberOfTickets;
+    }
+
+    public long getReservedAtMillis() {
+        return reservedAtMillis;
+    }
+
+    byte[] encode() {
+        byte[] airlineNameBytes = airlineName.getBytes(StandardCharsets.UTF_8);
+        if (airlineNameBytes.length > MAX_AIRLINE_NAME_BYTES) {
+            throw new IllegalArgumentException("Airline name too long to be journaled");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(FIXED_SIZE + airlineNameBytes.length);
+        buffer.putLong(confirmationNumber);
+        buffer.putLong(reservedAtMillis);
+        buffer.putInt(flightId);
+        buffer.putInt(numberOfTickets);
+        buffer.putShort((short) airlineNameBytes.length);
+        buffer.put(airlineNameBytes);
+        return buffer.array();
+    }
+
+    /**
+     * @param payload - The bytes written by {@link #encode()}, from its position to its limit
+     */
+    static JournalEntry decode(ByteBuffer payload) {
+        long confirmationNumber = payload.getLong();
+        long reservedAtMillis = payload.getLong();
+        int flightId = payload.getInt();
+        int numberOfTickets = payload.getInt();
+        byte[] airlineNameBytes = new byte[payload.getShort()];
+        payload.get(airlineNameBytes);
+        return new JournalEntry(confirmationNumber,
+                new String(airlineNameBytes, StandardCharsets.UTF_8),
+                flightId, numberOfTickets, reservedAtMillis);
+    }
+}
@@ -0,0 +1,335 @@
+package journal;
+
+import logging.RequestLogger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only record of the confirmed reservations, kept in a directory of segment files.
+ * <p>Each record is its payload length and CRC32 followed by the {@link JournalEntry} payload.
+ * A single writer thread takes every entry queued since its last write, appends them with one
+ * write and makes them durable with one {@link FileChannel#force(boolean)}, so concurrent
+ * reservations share a disk sync instead of paying one each. The futures returned by
+ * {@link #append(JournalEntry)} complete once their entry is on disk.
+ * <p>A new segment is started once the current one reaches the segment size. On startup every
+ * segment is read back to rebuild the index from confirmation number to record, and a record
+ * cut short by a crash at the end of the last segment is truncated.
+ */
+public class ReservationJournal implements Closeable {
+    private static final RequestLogger LOGGER = RequestLogger.get();
+    private static final Pattern SEGMENT_NAME =
+            Pattern.compile("reservations-(\\d{8})\\.journal");
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final int OFFSET_BITS = 40;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final Map<Integer, FileChannel> segments = new ConcurrentHashMap<>();
+    // From a confirmation number to its segment in the high bits and its offset in the low bits
+    private final Map<Long, Long> recordLocations = new ConcurrentHashMap<>();
+    private final BlockingQueue<PendingEntry> pendingEntries = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private volatile boolean closed;
+
+    private int currentSegment;
+    private FileChannel currentChannel;
+
+    private ReservationJournal(Path directory, long segmentBytes) throws IOException {
+        this.directory = directory;
+        // Segments are memory mapped on replay, which is limited to 2 GB
+        this.segmentBytes = Math.min(segmentBytes, Integer.MAX_VALUE);
+        Files.createDirectories(directory);
+        replay();
+        if (currentChannel == null) {
+            openSegment(1);
+        }
+        this.writerThread = new Thread(this::writeLoop, "reservation-journal-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Opens the journal of a directory, replaying the segments already in it
+     *
+     * @param segmentBytes - Size from which a new segment file is started
+     */
+    public static ReservationJournal open(Path directory, long segmentBytes) throws IOException {
+        return new ReservationJournal(directory, segmentBytes);
+    }
+
+    /**
+     * Queues an entry for the next group commit
+     *
+     * @return - a future completing once the entry is durable, or exceptionally if it could not
+     * be written
+     */
+    public CompletableFuture<Void> append(JournalEntry entry) {
+        PendingEntry pendingEntry;
+        try {
+            pendingEntry = new PendingEntry(entry);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (!closed) {
+            pendingEntries.add(pendingEntry);
+            // close() may have drained the queue between the check and the add. Whichever of
+            // close() and this check removes the entry fails it, the writer never sees it again
+            if (!closed || !pendingEntries.remove(pendingEntry)) {
+                return pendingEntry.written;
+            }
+        }
+        pendingEntry.written.completeExceptionally(
+                new IOException("The reservation journal is closed"));
+        return pendingEntry.written;
+    }
+
+    /**
+     * Reads back a reservation from the journal, checking the CRC of its record
+     *
+     * @return - the reservation with this confirmation number, or empty if it was not journaled
+     * @throws IOException - if the record cannot be read or was corrupted since it was written
+     */
+    public Optional<JournalEntry> find(long confirmationNumber) throws IOException {
+        Long location = recordLocations.get(confirmationNumber);
+        if (location == null) {
+            return Optional.empty();
+        }
+        FileChannel channel = segments.get((int) (location >>> OFFSET_BITS));
+        long offset = location & ((1L << OFFSET_BITS) - 1);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, offset);
+        header.flip();
+        int payloadLength = header.getInt();
+        int expectedCrc = header.getInt();
+        if (payloadLength <= 0 || payloadLength > segmentBytes) {
+            throw new IOException("Corrupt reservation journal record " + confirmationNumber);
+        }
+        ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+        readFully(channel, payload, offset + HEADER_SIZE);
+        payload.flip();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException("Corrupt reservation journal record " + confirmationNumber);
+        }
+        return Optional.of(JournalEntry.decode(payload));
+    }
+
+    /**
+     * @return - the number of reservations in the journal
+     */
+    public int size() {
+        return recordLocations.size();
+    }
+
+    /**
+     * Writes the entries still queued, then closes the segment files
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        PendingEntry pendingEntry;
+        while ((pendingEntry = pendingEntries.poll()) != null) {
+            pendingEntry.written.completeExceptionally(
+                    new IOException("The reservation journal is closed"));
+        }
+        for (FileChannel channel : segments.values()) {
+            channel.close();
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingEntry> batch = new ArrayList<>();
+        while (!closed || !pendingEntries.isEmpty()) {
+            try {
+                PendingEntry first = pendingEntries.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pendingEntries.drainTo(batch, MAX_BATCH_SIZE - 1);
+                write(batch);
+                for (PendingEntry pendingEntry : batch) {
+                    pendingEntry.written.complete(null);
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Could not write to the reservation journal", e);
+                for (PendingEntry pendingEntry : batch) {
+                    pendingEntry.written.completeExceptionally(e);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Appends a batch of entries and syncs it to disk. Only the writer thread calls this.
+     */
+    private void write(List<PendingEntry> batch) throws IOException {
+        int batchBytes = 0;
+        for (PendingEntry pendingEntry : batch) {
+            batchBytes += HEADER_SIZE + pendingEntry.payload.length;
+        }
+        long offset = currentChannel.size();
+        if (offset > 0 && offset + batchBytes > segmentBytes) {
+            currentChannel.force(false);
+            openSegment(currentSegment + 1);
+            offset = 0;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(batchBytes);
+        long[] recordOffsets = new long[batch.size()];
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < batch.size(); i++) {
+            byte[] payload = batch.get(i).payload;
+            recordOffsets[i] = offset + buffer.position();
+            crc.reset();
+            crc.update(payload);
+            buffer.putInt(payload.length);
+            buffer.putInt((int) crc.getValue());
+            buffer.put(payload);
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                currentChannel.write(buffer, offset + buffer.position());
+            }
+            currentChannel.force(false);
+        } catch (IOException e) {
+            // Drops a partly written batch, which would hide the next batches from the replay
+            currentChannel.truncate(offset);
+            throw e;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            recordLocations.put(batch.get(i).entry.getConfirmationNumber(),
+                    location(currentSegment, recordOffsets[i]));
+        }
+    }
+
+    /**
+     * Rebuilds the index from the segments of the directory, in segment order
+     */
+    private void replay() throws IOException {
+        List<Integer> segmentNumbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    segmentNumbers.add(Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        segmentNumbers.sort(null);
+
+        for (int segmentNumber : segmentNumbers) {
+            openSegment(segmentNumber);
+            long validBytes = replaySegment(segmentNumber, currentChannel);
+            if (validBytes < currentChannel.size()) {
+                LOGGER.warn("Truncating " + (currentChannel.size() - validBytes)
+                        + " unreadable bytes at the end of reservation journal segment "
+                        + segmentNumber);
+                currentChannel.truncate(validBytes);
+            }
+        }
+        if (!segmentNumbers.isEmpty()) {
+            LOGGER.info("Replayed " + recordLocations.size() + " reservations from "
+                    + segmentNumbers.size() + " journal segments");
+        }
+    }
+
+    /**
+     * @return - the number of bytes holding complete and valid records
+     */
+    private long replaySegment(int segmentNumber, FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return 0;
+        }
+        MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        CRC32 crc = new CRC32();
+        while (segment.remaining() >= HEADER_SIZE) {
+            int recordOffset = segment.position();
+            int payloadLength = segment.getInt();
+            int expectedCrc = segment.getInt();
+            if (payloadLength <= 0 || payloadLength > segment.remaining()) {
+                return recordOffset;
+            }
+            ByteBuffer payload = segment.slice();
+            payload.limit(payloadLength);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != expectedCrc) {
+                return recordOffset;
+            }
+            JournalEntry entry = JournalEntry.decode(payload);
+            recordLocations.put(entry.getConfirmationNumber(),
+                    location(segmentNumber, recordOffset));
+            segment.position(recordOffset + HEADER_SIZE + payloadLength);
+        }
+        return segment.position();
+    }
+
+    private void openSegment(int segmentNumber) throws IOException {
+        Path file = directory.resolve(String.format("reservations-%08d.journal", segmentNumber));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segments.put(segmentNumber, channel);
+        currentSegment = segmentNumber;
+        currentChannel = channel;
+    }
+
+    private static long location(int segmentNumber, long offset) {
+        return ((long) segmentNumber << OFFSET_BITS) | offset;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Reservation journal record cut short");
+            }
+        }
+    }
+
+    private static class PendingEntry {
+        private final JournalEntry entry;
+        private final byte[] payload;
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        private PendingEntry(JournalEntry entry) {
+            this.entry = entry;
+            this.payload = entry.encode();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package logging;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+
+/**
+ * Logs the status code and latency of every request to the route it is added to
+ */
+public class AccessLogFilter extends Filter {
+    private final RequestLogger logger;
+    private final String route;
+
+    public AccessLogFilter(RequestLogger logger, String route) {
+        this.logger = logger;
+        this.route = route;
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        long startNanos = System.nanoTime();
+        try {
+            chain.doFilter(exchange);
+        } finally {
+            logger.requestCompleted(route, exchange.getResponseCode(),
+                    System.nanoTime() - startNanos);
+        }
+    }
+
+    @Override
+    public String description() {
+        return "Logs the requests to " + route;
+    }
+}
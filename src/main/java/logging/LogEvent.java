@@ -0,0 +1,38 @@
+package logging;
+
+/**
+ * A slot of the {@link LogRingBuffer}. Slots are allocated once and overwritten by each event
+ * passing through them, so logging does not allocate an event per call.
+ */
+class LogEvent {
+    static final long NO_LATENCY = -1;
+    static final int NO_STATUS = -1;
+
+    long timestampMillis;
+    Level level;
+    String message;
+    String route;
+    String airline;
+    long latencyNanos;
+    int status;
+    Throwable throwable;
+
+    void set(long timestampMillis, Level level, String message, String route, String airline,
+             long latencyNanos, int status, Throwable throwable) {
+        this.timestampMillis = timestampMillis;
+        this.level = level;
+        this.message = message;
+        this.route = route;
+        this.airline = airline;
+        this.latencyNanos = latencyNanos;
+        this.status = status;
+        this.throwable = throwable;
+    }
+
+    void clear() {
+        message = null;
+        route = null;
+        airline = null;
+        throwable = null;
+    }
+}
@@ -0,0 +1,74 @@
+package logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded multi-producer, single-consumer ring buffer of preallocated {@link LogEvent}s.
+ * <p>Each slot carries a sequence number telling whether it is free for the producer claiming
+ * position n (sequence == n) or published for the consumer (sequence == n + 1). Producers never
+ * wait: when the buffer is full {@link #offer} returns false.
+ */
+class LogRingBuffer {
+    private final LogEvent[] events;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final int mask;
+    // Only read and written by the consumer thread
+    private long head;
+
+    /**
+     * @param capacity - Rounded up to a power of two
+     */
+    LogRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.events = new LogEvent[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            events[i] = new LogEvent();
+            sequences.set(i, i);
+        }
+    }
+
+    boolean offer(long timestampMillis, Level level, String message, String route,
+                  String airline, long latencyNanos, int status, Throwable throwable) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    events[index].set(timestampMillis, level, message, route, airline,
+                            latencyNanos, status, throwable);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Consumer side: returns the next published event or null if there is none. The event must
+     * be handed back with {@link #release} once it has been written.
+     */
+    LogEvent peek() {
+        int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        return events[index];
+    }
+
+    void release(LogEvent event) {
+        int index = (int) (head & mask);
+        event.clear();
+        sequences.set(index, head + events.length);
+        head++;
+    }
+}
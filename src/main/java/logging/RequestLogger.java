@@ -0,0 +1,239 @@
+package logging;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous logger with structured fields. Request threads only copy their fields into a
+ * ring buffer; a single background thread formats the events and writes them to the console.
+ * The writer thread sleeps while the buffer is empty and is woken up by the next event.
+ * <ul>
+ *     <li>Events below the configured level are discarded before reaching the buffer</li>
+ *     <li>When the buffer is full events are dropped instead of blocking the caller. The number
+ *     of dropped events is logged once the buffer drains</li>
+ *     <li>Stack traces of repeated failures are printed at most once per interval for each
+ *     source and exception type, later occurrences only log their message</li>
+ * </ul>
+ * <p>Configured with the log.level, log.buffer.size and log.stacktrace.interval.ms system
+ * properties.
+ */
+public class RequestLogger {
+    private static final RequestLogger SHARED = new RequestLogger(
+            Level.valueOf(System.getProperty("log.level", "INFO").toUpperCase(Locale.ROOT)),
+            Integer.getInteger("log.buffer.size", 8192),
+            Long.getLong("log.stacktrace.interval.ms", 10_000),
+            System.out);
+
+    private final Level minimumLevel;
+    private final LogRingBuffer ringBuffer;
+    private final long stackTraceIntervalMillis;
+    private final PrintStream output;
+    private final LongAdder droppedEvents = new LongAdder();
+    private final Map<String, AtomicLong> lastStackTraceMillis = new ConcurrentHashMap<>();
+    private final StringBuilder line = new StringBuilder(256);
+    private final Thread writer;
+    // Set by the writer thread before it parks, so producers know to wake it up
+    private volatile boolean writerParked;
+    private long reportedDroppedEvents;
+
+    RequestLogger(Level minimumLevel, int bufferSize, long stackTraceIntervalMillis,
+                  PrintStream output) {
+        this.minimumLevel = minimumLevel;
+        this.ringBuffer = new LogRingBuffer(bufferSize);
+        this.stackTraceIntervalMillis = stackTraceIntervalMillis;
+        this.output = output;
+
+        this.writer = new Thread(this::writeEvents, "request-logger");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @return - the logger shared by the whole server
+     */
+    public static RequestLogger get() {
+        return SHARED;
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.compareTo(minimumLevel) >= 0;
+    }
+
+    public void debug(String message) {
+        log(Level.DEBUG, message, null, null, LogEvent.NO_LATENCY, LogEvent.NO_STATUS, null);
+    }
+
+    public void info(String message) {
+        log(Level.INFO, message, null, null, LogEvent.NO_LATENCY, LogEvent.NO_STATUS, null);
+    }
+
+    public void warn(String message) {
+        log(Level.WARN, message, null, null, LogEvent.NO_LATENCY, LogEvent.NO_STATUS, null);
+    }
+
+    public void error(String message, Throwable throwable) {
+        log(Level.ERROR, message, null, null, LogEvent.NO_LATENCY, LogEvent.NO_STATUS,
+                rateLimitStackTrace("server", throwable));
+    }
+
+    /**
+     * Logs a message about a request to one of the server routes
+     */
+    public void request(Level level, String route, String message) {
+        log(level, message, route, null, LogEvent.NO_LATENCY, LogEvent.NO_STATUS, null);
+    }
+
+    /**
+     * Logs a completed request to one of the server routes
+     */
+    public void requestCompleted(String route, int status, long latencyNanos) {
+        log(status >= 500 ? Level.WARN : Level.INFO, "Request completed", route, null,
+                latencyNanos, status, null);
+    }
+
+    /**
+     * Logs a failed call to an airline. The stack trace is only printed once per interval for
+     * each airline and exception type.
+     */
+    public void upstreamFailure(String airline, String message, Throwable throwable) {
+        log(Level.WARN, message, null, airline, LogEvent.NO_LATENCY, LogEvent.NO_STATUS,
+                rateLimitStackTrace(airline, throwable));
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents.sum();
+    }
+
+    private void log(Level level, String message, String route, String airline,
+                     long latencyNanos, int status, Throwable throwable) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        if (!ringBuffer.offer(System.currentTimeMillis(), level, message, route, airline,
+                latencyNanos, status, throwable)) {
+            droppedEvents.increment();
+            return;
+        }
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * @return - the throwable if its stack trace may be printed now, otherwise a lightweight
+     * stand-in carrying only its type and message
+     */
+    private Throwable rateLimitStackTrace(String source, Throwable throwable) {
+        if (throwable == null) {
+            return null;
+        }
+        // Failures of asynchronous calls arrive wrapped, the cause tells them apart
+        if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        String key = source + '|' + throwable.getClass().getName();
+        AtomicLong lastPrinted = lastStackTraceMillis.computeIfAbsent(key,
+                ignored -> new AtomicLong());
+        long now = System.currentTimeMillis();
+        long previous = lastPrinted.get();
+        if (now - previous >= stackTraceIntervalMillis
+                && lastPrinted.compareAndSet(previous, now)) {
+            return throwable;
+        }
+        return new SuppressedStackTrace(throwable);
+    }
+
+    /**
+     * Writes the events as they arrive and flushes the output once the buffer is drained, then
+     * parks until a producer publishes the next event. The buffer is checked again after
+     * {@link #writerParked} is set, so an event published meanwhile is not left waiting: either
+     * the writer sees it, or its producer sees the flag and unparks the writer.
+     */
+    private void writeEvents() {
+        boolean unflushed = false;
+        while (true) {
+            LogEvent event = ringBuffer.peek();
+            if (event == null) {
+                if (unflushed) {
+                    reportDroppedEvents();
+                    output.flush();
+                    unflushed = false;
+                }
+                writerParked = true;
+                if (ringBuffer.peek() == null) {
+                    LockSupport.park(this);
+                }
+                writerParked = false;
+                continue;
+            }
+            try {
+                write(event);
+            } finally {
+                ringBuffer.release(event);
+            }
+            unflushed = true;
+        }
+    }
+
+    private void reportDroppedEvents() {
+        long dropped = droppedEvents.sum();
+        if (dropped > reportedDroppedEvents) {
+            output.println(Instant.ofEpochMilli(System.currentTimeMillis())
+                    + " WARN msg=\"Dropped " + (dropped - reportedDroppedEvents)
+                    + " log events, the log buffer was full\"");
+            reportedDroppedEvents = dropped;
+        }
+    }
+
+    private void write(LogEvent event) {
+        line.setLength(0);
+        line.append(Instant.ofEpochMilli(event.timestampMillis)).append(' ')
+                .append(event.level);
+        if (event.route != null) {
+            line.append(" route=").append(event.route);
+        }
+        if (event.airline != null) {
+            line.append(" airline=\"").append(event.airline).append('"');
+        }
+        if (event.status != LogEvent.NO_STATUS) {
+            line.append(" status=").append(event.status);
+        }
+        if (event.latencyNanos != LogEvent.NO_LATENCY) {
+            line.append(" latencyMs=").append(event.latencyNanos / 1_000_000)
+                    .append('.').append(event.latencyNanos / 100_000 % 10);
+        }
+        if (event.message != null) {
+            line.append(" msg=\"").append(event.message).append('"');
+        }
+        if (event.throwable instanceof SuppressedStackTrace) {
+            line.append(" error=\"").append(event.throwable.getMessage()).append('"');
+        } else if (event.throwable != null) {
+            StringWriter stackTrace = new StringWriter();
+            event.throwable.printStackTrace(new PrintWriter(stackTrace));
+            line.append('\n').append(stackTrace.toString().stripTrailing());
+        }
+        output.println(line);
+    }
+
+    /**
+     * Stands in for a throwable whose stack trace was printed recently. Does not capture a
+     * stack trace of its own.
+     */
+    private static class SuppressedStackTrace extends Throwable {
+        private static final long serialVersionUID = 1L;
+
+        private SuppressedStackTrace(Throwable throwable) {
+            super(throwable.getClass().getName() + ": " + throwable.getMessage(), null,
+                    false, false);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package metrics;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Records the number of requests per status code, the latency and the number of requests in
+ * flight of the route it is added to
+ */
+public class MetricsFilter extends Filter {
+    private static final int MAX_STATUS_CODE = 599;
+
+    private final MetricsRegistry metricsRegistry;
+    private final String route;
+    private final LatencyHistogram latency;
+    private final AtomicLong inFlight = new AtomicLong();
+    // Indexed by status code, filled the first time a status code is seen
+    private final AtomicReferenceArray<Counter> requestsByStatus =
+            new AtomicReferenceArray<>(MAX_STATUS_CODE + 1);
+
+    public MetricsFilter(MetricsRegistry metricsRegistry, String route) {
+        this.metricsRegistry = metricsRegistry;
+        this.route = route;
+        this.latency = metricsRegistry.histogram("http_request_duration_seconds",
+                "Time spent handling HTTP requests", "route", route);
+        metricsRegistry.gauge("http_requests_in_flight",
+                "HTTP requests currently being handled", inFlight::get, "route", route);
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        long startNanos = System.nanoTime();
+        inFlight.incrementAndGet();
+        try {
+            chain.doFilter(exchange);
+        } finally {
+            inFlight.decrementAndGet();
+            latency.recordNanos(System.nanoTime() - startNanos);
+            requestsCounter(exchange.getResponseCode()).increment();
+        }
+    }
+
+    @Override
+    public String description() {
+        return "Records request metrics for " + route;
+    }
+
+    private Counter requestsCounter(int statusCode) {
+        // -1 when the handler failed before sending a response
+        int index = statusCode < 0 || statusCode > MAX_STATUS_CODE ? 0 : statusCode;
+        Counter counter = requestsByStatus.get(index);
+        if (counter == null) {
+            counter = metricsRegistry.counter("http_requests_total",
+                    "HTTP requests handled, by route and status code",
+                    "route", route, "status", index == 0 ? "none" : String.valueOf(index));
+            requestsByStatus.compareAndSet(index, null, counter);
+        }
+        return counter;
+    }
+}
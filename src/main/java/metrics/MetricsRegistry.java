@@ -0,0 +1,136 @@
+package metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds the metrics of the server and renders them in the Prometheus text exposition format.
+ * <p>Metrics are looked up once, when a component is created, and then recorded to directly.
+ * Label values are given as name and value pairs (Example: "route", "/search").
+ */
+public class MetricsRegistry {
+    // Histogram buckets exposed to Prometheus, in seconds
+    private static final double[] EXPOSED_BUCKETS_SECONDS = {0.001, 0.0025, 0.005, 0.01, 0.025,
+            0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    private final Map<String, MetricFamily> families = new ConcurrentSkipListMap<>();
+
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, "counter")
+                .series.computeIfAbsent(renderLabels(labels), ignored -> new Counter());
+    }
+
+    /**
+     * A counter read from the given supplier whenever the metrics are rendered, for a count kept
+     * by another component. The supplier must never decrease.
+     */
+    public void counter(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, "counter").series.put(renderLabels(labels), value);
+    }
+
+    /**
+     * A latency histogram, exposed in seconds
+     */
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, help, "histogram")
+                .series.computeIfAbsent(renderLabels(labels), ignored -> new LatencyHistogram());
+    }
+
+    /**
+     * A value read from the given supplier whenever the metrics are rendered
+     */
+    public void gauge(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, "gauge").series.put(renderLabels(labels), value);
+    }
+
+    /**
+     * Renders all the metrics in the Prometheus text exposition format, version 0.0.4
+     */
+    public String toPrometheusText() {
+        StringBuilder text = new StringBuilder(4096);
+        for (MetricFamily family : families.values()) {
+            text.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            text.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> series : family.series.entrySet()) {
+                appendSeries(text, family.name, series.getKey(), series.getValue());
+            }
+        }
+        return text.toString();
+    }
+
+    private MetricFamily family(String name, String help, String type) {
+        MetricFamily family = families.computeIfAbsent(name,
+                ignored -> new MetricFamily(name, help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already a " + family.type);
+        }
+        return family;
+    }
+
+    private static void appendSeries(StringBuilder text, String name, String labels,
+                                     Object metric) {
+        if (metric instanceof Counter) {
+            appendSample(text, name, labels, ((Counter) metric).get());
+        } else if (metric instanceof LongSupplier) {
+            appendSample(text, name, labels, ((LongSupplier) metric).getAsLong());
+        } else if (metric instanceof LatencyHistogram) {
+            LatencyHistogram histogram = (LatencyHistogram) metric;
+            for (double bucketSeconds : EXPOSED_BUCKETS_SECONDS) {
+                long count = histogram.countAtMost(Math.round(bucketSeconds * 1_000_000));
+                appendSample(text, name + "_bucket",
+                        withLabel(labels, "le", String.valueOf(bucketSeconds)), count);
+            }
+            appendSample(text, name + "_bucket", withLabel(labels, "le", "+Inf"),
+                    histogram.getCount());
+            text.append(name).append("_sum").append(labels).append(' ')
+                    .append(histogram.getSumMicros() / 1_000_000.0).append('\n');
+            appendSample(text, name + "_count", labels, histogram.getCount());
+        }
+    }
+
+    private static void appendSample(StringBuilder text, String name, String labels,
+                                     long value) {
+        text.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    private static String withLabel(String labels, String labelName, String labelValue) {
+        String label = labelName + "=\"" + labelValue + "\"";
+        return labels.isEmpty()
+                ? "{" + label + "}"
+                : labels.substring(0, labels.length() - 1) + "," + label + "}";
+    }
+
+    private static String renderLabels(String... labels) {
+        if (labels.length == 0) {
+            return "";
+        }
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name and value pairs");
+        }
+        StringBuilder rendered = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                rendered.append(',');
+            }
+            rendered.append(labels[i]).append("=\"")
+                    .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\""))
+                    .append('"');
+        }
+        return rendered.append('}').toString();
+    }
+
+    private static class MetricFamily {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final Map<String, Object> series = new ConcurrentHashMap<>();
+
+        private MetricFamily(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
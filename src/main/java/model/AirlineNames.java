@@ -0,0 +1,35 @@
+package model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares a single instance of each airline name between the flights, so the few names of the
+ * airlines are not held again by every flight parsed from an answer
+ */
+final class AirlineNames {
+    // Airline names come from the airlines, so the table is bounded in case one misbehaves
+    private static final int MAX_NAMES = 4096;
+    private static final Map<String, String> NAMES = new ConcurrentHashMap<>();
+
+    private AirlineNames() {
+    }
+
+    /**
+     * @return - the shared instance equal to the name, or the name itself once the table is full
+     */
+    static String intern(String airlineName) {
+        if (airlineName == null) {
+            return null;
+        }
+        String sharedName = NAMES.get(airlineName);
+        if (sharedName != null) {
+            return sharedName;
+        }
+        if (NAMES.size() >= MAX_NAMES) {
+            return airlineName;
+        }
+        sharedName = NAMES.putIfAbsent(airlineName, airlineName);
+        return sharedName == null ? airlineName : sharedName;
+    }
+}
@@ -1,84 +1,89 @@
 package model;
 
-import java.time.LocalDate;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 
-public class Flight implements Comparable<Flight> {
-    private int id;
-    private String airlineName;
-    private double priceUSD;
-    private int numberOfFreeBags;
-    private int numberOfAvailableSeats;
-    private LocalDate date;
+import java.time.LocalDate;
 
-    public Flight() {
+/**
+ * A flight offered by an airline. Flights are immutable and ordered from the cheapest to the
+ * most expensive.
+ * <p>The price is kept in whole cents, and is read and written as JSON in dollars as priceUSD.
+ */
+@JsonPropertyOrder({"id", "airlineName", "priceUSD", "numberOfFreeBags",
+        "numberOfAvailableSeats", "date"})
+public final class Flight implements Comparable<Flight> {
+    private final int id;
+    private final String airlineName;
+    private final long priceCents;
+    private final int numberOfFreeBags;
+    private final int numberOfAvailableSeats;
+    private final LocalDate date;
+
+    /**
+     * @param priceUSD - The price in dollars, rounded to the cent
+     */
+    @JsonCreator
+    public Flight(@JsonProperty("id") int id,
+                  @JsonProperty("airlineName") String airlineName,
+                  @JsonProperty("priceUSD") double priceUSD,
+                  @JsonProperty("numberOfFreeBags") int numberOfFreeBags,
+                  @JsonProperty("numberOfAvailableSeats") int numberOfAvailableSeats,
+                  @JsonProperty("date") LocalDate date) {
+        this(id, airlineName, Math.round(priceUSD * 100.0), numberOfFreeBags,
+                numberOfAvailableSeats, date);
     }
 
-    public Flight(int id, String airlineName, double priceUSD, int numberOfFreeBags,
-                  int numberOfAvailableSeats, LocalDate date) {
+    private Flight(int id, String airlineName, long priceCents, int numberOfFreeBags,
+                   int numberOfAvailableSeats, LocalDate date) {
         this.id = id;
-        this.airlineName = airlineName;
-        this.priceUSD = Math.round(priceUSD * 100.0) / 100.0;
+        this.airlineName = AirlineNames.intern(airlineName);
+        this.priceCents = priceCents;
         this.numberOfFreeBags = numberOfFreeBags;
         this.numberOfAvailableSeats = numberOfAvailableSeats;
         this.date = date;
     }
 
-    public LocalDate getDate() {
-        return date;
+    public static Flight ofPriceCents(int id, String airlineName, long priceCents,
+                                      int numberOfFreeBags, int numberOfAvailableSeats,
+                                      LocalDate date) {
+        return new Flight(id, airlineName, priceCents, numberOfFreeBags, numberOfAvailableSeats,
+                date);
     }
 
-    public void setDate(LocalDate date) {
-        this.date = date;
+    public LocalDate getDate() {
+        return date;
     }
 
     public String getAirlineName() {
         return airlineName;
     }
 
-    public void setAirlineName(String airlineName) {
-        this.airlineName = airlineName;
-    }
-
     public double getPriceUSD() {
-        return priceUSD;
+        return priceCents / 100.0;
     }
 
-    public void setPriceUSD(double priceUSD) {
-        this.priceUSD = Math.round(priceUSD * 100.0) / 100.0;
+    @JsonIgnore
+    public long getPriceCents() {
+        return priceCents;
     }
 
     public int getNumberOfFreeBags() {
         return numberOfFreeBags;
     }
 
-    public void setNumberOfFreeBags(int numberOfFreeBags) {
-        this.numberOfFreeBags = numberOfFreeBags;
-    }
-
     public int getId() {
         return id;
     }
 
-    public void setId(int id) {
-        this.id = id;
-    }
-
     public int getNumberOfAvailableSeats() {
         return numberOfAvailableSeats;
     }
 
-    public void setNumberOfAvailableSeats(int numberOfAvailableSeats) {
-        this.numberOfAvailableSeats = numberOfAvailableSeats;
-    }
-
     @Override
     public int compareTo(Flight other) {
-        if (this.priceUSD < other.priceUSD) {
-            return 1;
-        } else if (this.priceUSD > other.priceUSD) {
-            return -1;
-        }
-
-        return 0;
+        return Long.compare(this.priceCents, other.priceCents);
     }
 }
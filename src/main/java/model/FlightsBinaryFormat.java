@@ -0,0 +1,137 @@
+package model;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of a list of {@link Flight}s, for the clients calling /search at
+ * high rates which would rather not encode and parse JSON.
+ * <p>Each airline name is written once in a dictionary and the flights refer to it by index.
+ * Prices are whole cents and dates are days since 1970-01-01. Binary layout, big endian:
+ * <pre>
+ * byte  version, currently 1
+ * short number of airline names
+ *   short  airline name length in bytes
+ *   byte[] airline name in UTF-8
+ * int   number of flights
+ *   int   id
+ *   short airline name index, -1 for no airline name
+ *   int   price in cents
+ *   int   numberOfFreeBags
+ *   int   numberOfAvailableSeats
+ *   int   date as epoch day, {@link #NO_DATE} for no date
+ * </pre>
+ */
+public final class FlightsBinaryFormat {
+    public static final String MEDIA_TYPE = "application/x-flights-binary";
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    private static final byte VERSION = 1;
+    private static final int FLIGHT_SIZE = Integer.BYTES * 5 + Short.BYTES;
+    private static final int MAX_AIRLINE_NAMES = Short.MAX_VALUE;
+    private static final int MAX_AIRLINE_NAME_BYTES = Short.MAX_VALUE;
+
+    private FlightsBinaryFormat() {
+    }
+
+    /**
+     * @throws IllegalArgumentException - if the flights have too many airlines, an airline name
+     *                                  is too long or a price does not fit in the format
+     */
+    public static byte[] encode(List<Flight> flights) {
+        Map<String, Integer> airlineIndexes = new HashMap<>();
+        List<byte[]> airlineNames = new ArrayList<>();
+        int dictionaryBytes = 0;
+        for (Flight flight : flights) {
+            String airlineName = flight.getAirlineName();
+            if (airlineName == null || airlineIndexes.containsKey(airlineName)) {
+                continue;
+            }
+            byte[] airlineNameBytes = airlineName.getBytes(StandardCharsets.UTF_8);
+            if (airlineNameBytes.length > MAX_AIRLINE_NAME_BYTES
+                    || airlineNames.size() == MAX_AIRLINE_NAMES) {
+                throw new IllegalArgumentException("Airline names too long or too many to be "
+                        + "encoded");
+            }
+            airlineIndexes.put(airlineName, airlineNames.size());
+            airlineNames.add(airlineNameBytes);
+            dictionaryBytes += Short.BYTES + airlineNameBytes.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 + Short.BYTES + dictionaryBytes
+                + Integer.BYTES + flights.size() * FLIGHT_SIZE);
+        buffer.put(VERSION);
+        buffer.putShort((short) airlineNames.size());
+        for (byte[] airlineName : airlineNames) {
+            buffer.putShort((short) airlineName.length);
+            buffer.put(airlineName);
+        }
+        buffer.putInt(flights.size());
+        for (Flight flight : flights) {
+            long priceCents = flight.getPriceCents();
+            if (priceCents < Integer.MIN_VALUE || priceCents > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Price too large to be encoded: "
+                        + flight.getPriceUSD());
+            }
+            buffer.putInt(flight.getId());
+            buffer.putShort(flight.getAirlineName() == null
+                    ? -1
+                    : (short) (int) airlineIndexes.get(flight.getAirlineName()));
+            buffer.putInt((int) priceCents);
+            buffer.putInt(flight.getNumberOfFreeBags());
+            buffer.putInt(flight.getNumberOfAvailableSeats());
+            buffer.putInt(flight.getDate() == null
+                    ? NO_DATE
+                    : Math.toIntExact(flight.getDate().toEpochDay()));
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @param encoded - The bytes written by {@link #encode(List)}, from its position to its
+     *                limit
+     * @throws IllegalArgumentException - if the bytes are not a list of flights of a known
+     *                                  version
+     */
+    public static List<Flight> decode(ByteBuffer encoded) {
+        try {
+            byte version = encoded.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unknown flights format version " + version);
+            }
+            String[] airlineNames = new String[encoded.getShort()];
+            for (int i = 0; i < airlineNames.length; i++) {
+                byte[] airlineName = new byte[encoded.getShort()];
+                encoded.get(airlineName);
+                airlineNames[i] = new String(airlineName, StandardCharsets.UTF_8);
+            }
+            int numberOfFlights = encoded.getInt();
+            if (numberOfFlights < 0 || numberOfFlights > encoded.remaining() / FLIGHT_SIZE) {
+                throw new IllegalArgumentException("Flights cut short");
+            }
+            List<Flight> flights = new ArrayList<>(numberOfFlights);
+            for (int i = 0; i < numberOfFlights; i++) {
+                int id = encoded.getInt();
+                short airlineIndex = encoded.getShort();
+                int priceCents = encoded.getInt();
+                int numberOfFreeBags = encoded.getInt();
+                int numberOfAvailableSeats = encoded.getInt();
+                int epochDay = encoded.getInt();
+                flights.add(Flight.ofPriceCents(id,
+                        airlineIndex < 0 ? null : airlineNames[airlineIndex], priceCents,
+                        numberOfFreeBags, numberOfAvailableSeats,
+                        epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay)));
+            }
+            return flights;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException
+                | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Malformed flights", e);
+        }
+    }
+}
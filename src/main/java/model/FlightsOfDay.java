@@ -0,0 +1,22 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public class FlightsOfDay {
+    private final LocalDate date;
+    private final List<Flight> flights;
+
+    public FlightsOfDay(LocalDate date, List<Flight> flights) {
+        this.date = date;
+        this.flights = flights;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public List<Flight> getFlights() {
+        return flights;
+    }
+}
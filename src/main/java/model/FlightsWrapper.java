@@ -1,12 +1,15 @@
 package model;
 
-import java.util.Collections;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import java.util.List;
 
-public class FlightsWrapper {
-    private List<Flight> flights = Collections.EMPTY_LIST;
+public final class FlightsWrapper {
+    private final List<Flight> flights;
 
-    public FlightsWrapper(List<Flight> flights) {
+    @JsonCreator
+    public FlightsWrapper(@JsonProperty("flights") List<Flight> flights) {
         this.flights = flights;
     }
 
@@ -0,0 +1,47 @@
+package model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of one reservation in a batch: either a confirmation number or an error message
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReservationResult {
+    private final int id;
+    private final String airlineName;
+    private final Long confirmationNumber;
+    private final String error;
+
+    private ReservationResult(int id, String airlineName, Long confirmationNumber, String error) {
+        this.id = id;
+        this.airlineName = airlineName;
+        this.confirmationNumber = confirmationNumber;
+        this.error = error;
+    }
+
+    public static ReservationResult confirmed(TicketReservationRequest request,
+                                              long confirmationNumber) {
+        return new ReservationResult(request.getId(), request.getAirlineName(),
+                confirmationNumber, null);
+    }
+
+    public static ReservationResult failed(TicketReservationRequest request, String error) {
+        return new ReservationResult(request.getId(), request.getAirlineName(), null, error);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getAirlineName() {
+        return airlineName;
+    }
+
+    public Long getConfirmationNumber() {
+        return confirmationNumber;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
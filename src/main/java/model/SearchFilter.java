@@ -0,0 +1,111 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Restricts the flights returned by a search and caps their number to the cheapest ones
+ */
+public class SearchFilter {
+    private static final SearchFilter NONE = new SearchFilter(Double.MAX_VALUE, 0, 0, null, 0);
+
+    private final double maxPrice;
+    private final int minSeats;
+    private final int minFreeBags;
+    // Lower case airline names, null to include all airlines
+    private final Set<String> airlines;
+    private final int limit;
+
+    /**
+     * @param maxPrice    - Most expensive price in USD to include
+     * @param minSeats    - Fewest available seats a flight must have
+     * @param minFreeBags - Fewest free bags a flight must include
+     * @param airlines    - Names of the airlines to search, or null to search all airlines
+     * @param limit       - Maximum number of flights to return, or 0 to return all of them
+     */
+    public SearchFilter(double maxPrice, int minSeats, int minFreeBags, Set<String> airlines,
+                        int limit) {
+        this.maxPrice = maxPrice;
+        this.minSeats = minSeats;
+        this.minFreeBags = minFreeBags;
+        this.airlines = airlines == null
+                ? null
+                : airlines.stream()
+                .map(airline -> airline.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+        this.limit = limit;
+    }
+
+    /**
+     * @return - a filter letting every flight through
+     */
+    public static SearchFilter none() {
+        return NONE;
+    }
+
+    /**
+     * @return - true if the airline may be contacted at all
+     */
+    public boolean includesAirline(String airlineName) {
+        return airlines == null
+                || (airlineName != null && airlines.contains(airlineName.toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * @return - true if only some airlines are searched
+     */
+    public boolean restrictsAirlines() {
+        return airlines != null;
+    }
+
+    public boolean matches(Flight flight) {
+        return flight.getPriceUSD() <= maxPrice
+                && flight.getNumberOfAvailableSeats() >= minSeats
+                && flight.getNumberOfFreeBags() >= minFreeBags
+                && includesAirline(flight.getAirlineName());
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Keeps the matching flights and, when there is a limit k, only the k cheapest of them.
+     * The selection goes through a heap bounded to k flights, costing O(n log k).
+     *
+     * @return - the selected flights from the cheapest to the most expensive
+     */
+    public List<Flight> apply(Iterable<Flight> flights) {
+        if (limit <= 0) {
+            List<Flight> selectedFlights = new ArrayList<>();
+            for (Flight flight : flights) {
+                if (matches(flight)) {
+                    selectedFlights.add(flight);
+                }
+            }
+            selectedFlights.sort(null);
+            return selectedFlights;
+        }
+
+        // Reversed so the head is the most expensive flight, the one to evict
+        PriorityQueue<Flight> cheapestFlights =
+                new PriorityQueue<>(limit + 1, Collections.reverseOrder());
+        for (Flight flight : flights) {
+            if (!matches(flight)) {
+                continue;
+            }
+            cheapestFlights.add(flight);
+            if (cheapestFlights.size() > limit) {
+                cheapestFlights.poll();
+            }
+        }
+        List<Flight> selectedFlights = new ArrayList<>(cheapestFlights);
+        selectedFlights.sort(null);
+        return selectedFlights;
+    }
+}
@@ -0,0 +1,34 @@
+package model;
+
+import java.util.List;
+
+/**
+ * The flights found by a search, and whether every airline searched answered. A search is
+ * incomplete when an airline was skipped, failed or had not answered by the deadline, so
+ * flights the airlines have may be missing from it.
+ */
+public class SearchResult {
+    private final List<Flight> flights;
+    private final boolean complete;
+
+    public SearchResult(List<Flight> flights, boolean complete) {
+        this.flights = flights;
+        this.complete = complete;
+    }
+
+    public static SearchResult complete(List<Flight> flights) {
+        return new SearchResult(flights, true);
+    }
+
+    public List<Flight> getFlights() {
+        return flights;
+    }
+
+    /**
+     * @return - true if every airline searched answered, so the result may be kept for later
+     * searches
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+}
@@ -1,31 +1,31 @@
 package model;
 
-public class TicketReservationRequest {
-    private int id;
-    private String airlineName;
-    private int numberOfTickets;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
-    public int getId() {
-        return id;
-    }
+public final class TicketReservationRequest {
+    private final int id;
+    private final String airlineName;
+    private final int numberOfTickets;
 
-    public void setId(int id) {
+    @JsonCreator
+    public TicketReservationRequest(@JsonProperty("id") int id,
+                                    @JsonProperty("airlineName") String airlineName,
+                                    @JsonProperty("numberOfTickets") int numberOfTickets) {
         this.id = id;
+        this.airlineName = airlineName;
+        this.numberOfTickets = numberOfTickets;
     }
 
-    public String getAirlineName() {
-        return airlineName;
+    public int getId() {
+        return id;
     }
 
-    public void setAirlineName(String airlineName) {
-        this.airlineName = airlineName;
+    public String getAirlineName() {
+        return airlineName;
     }
 
     public int getNumberOfTickets() {
         return numberOfTickets;
     }
-
-    public void setNumberOfTickets(int numberOfTickets) {
-        this.numberOfTickets = numberOfTickets;
-    }
 }
@@ -0,0 +1,207 @@
+package services;
+
+import java.lang.reflect.Method;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+/**
+ * One airline of the {@link AirlineRegistry}: where it is reached, the HTTP client dedicated to
+ * it, and its circuit breaker and latency history. An airline whose settings change gets a new
+ * endpoint, starting with a closed breaker and no latency history.
+ * <p>Each airline has its own client, so its connections are never shared with another airline,
+ * and a cap on its requests in flight, so a slow airline holding all its connections cannot
+ * delay the calls to the other airlines. Over HTTP/1.1 the client opens one connection per
+ * request in flight, so the cap is also the size of its connection pool. The clients of all the
+ * airlines may share one bounded {@link UpstreamExecutor} handling their answers.
+ */
+public class AirlineEndpoint {
+    private final Settings settings;
+    private final HttpClient httpClient;
+    private final Semaphore requestPermits;
+    private final UpstreamExecutor executor;
+    private final CircuitBreaker circuitBreaker;
+    private final LatencyTracker latencyTracker = new LatencyTracker();
+
+    public AirlineEndpoint(Settings settings, CircuitBreaker circuitBreaker) {
+        this(settings, circuitBreaker, null);
+    }
+
+    /**
+     * @param executor - Executor handling the answers of the airline, null for the unbounded
+     *                 pool the HTTP client creates by default
+     */
+    public AirlineEndpoint(Settings settings, CircuitBreaker circuitBreaker,
+                           UpstreamExecutor executor) {
+        this.settings = settings;
+        this.circuitBreaker = circuitBreaker;
+        this.executor = executor;
+        HttpClient.Builder httpClientBuilder = HttpClient.newBuilder()
+                .version(settings.httpVersion)
+                .connectTimeout(settings.connectTimeout);
+        if (executor != null) {
+            httpClientBuilder.executor(executor);
+        }
+        this.httpClient = httpClientBuilder.build();
+        this.requestPermits = new Semaphore(settings.maxConcurrentRequests);
+    }
+
+    public String getName() {
+        return settings.name;
+    }
+
+    public String getAddress() {
+        return settings.address;
+    }
+
+    /**
+     * Longest time to wait for an answer of this airline
+     */
+    public Duration getTimeout() {
+        return settings.timeout;
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public LatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+
+    /**
+     * Reserves a slot for a request to this airline without waiting
+     *
+     * @return - false if the airline already has its maximum number of requests in flight, or
+     * if the executor handling the answers has a full queue
+     */
+    public boolean tryAcquireRequestPermit() {
+        if (executor != null && !executor.tryAcceptCall()) {
+            return false;
+        }
+        return requestPermits.tryAcquire();
+    }
+
+    public void releaseRequestPermit() {
+        requestPermits.release();
+    }
+
+    public int getRequestsInFlight() {
+        return settings.maxConcurrentRequests - requestPermits.availablePermits();
+    }
+
+    /**
+     * Opens connections to the airline before its first call, so that call does not wait for
+     * the connection and the HTTP/2 upgrade. A first request finds out the HTTP version of the
+     * airline: over HTTP/2 every call shares its connection, over HTTP/1.1 the requested number
+     * of requests are then sent together, so the client opens and keeps a connection for each.
+     * <p>The warm-up requests are neither counted by the circuit breaker nor by the latency
+     * tracker.
+     *
+     * @param request     - A request the airline answers without closing the connection, such
+     *                    as a search
+     * @param connections - Number of connections to open over HTTP/1.1
+     * @return - the HTTP version the airline answered with, failed if it could not be reached
+     */
+    public CompletableFuture<HttpClient.Version> warmUp(HttpRequest request, int connections) {
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenCompose(response -> {
+                    if (response.version() == HttpClient.Version.HTTP_2 || connections <= 1) {
+                        return CompletableFuture.completedFuture(response.version());
+                    }
+                    CompletableFuture<?>[] requests = new CompletableFuture<?>[connections];
+                    for (int i = 0; i < connections; i++) {
+                        requests[i] = httpClient.sendAsync(request,
+                                HttpResponse.BodyHandlers.discarding());
+                    }
+                    return CompletableFuture.allOf(requests)
+                            .handle((ignored, e) -> response.version());
+                });
+    }
+
+    /**
+     * Stops the client of an airline a reload replaced: requests in flight complete, then its
+     * connections are closed. Only JDK 21 and later can stop a client, so the method is looked
+     * up reflectively. On older JDKs the idle connections are closed by the keep-alive timeout
+     * of the pool, and the client thread stops once the endpoint is no longer referenced.
+     */
+    void retire() {
+        try {
+            Method shutdown = HttpClient.class.getMethod("shutdown");
+            shutdown.invoke(httpClient);
+        } catch (ReflectiveOperationException e) {
+            // Not supported by this JDK
+        }
+    }
+
+    /**
+     * Everything defining how an airline is called. Two endpoints with equal settings are
+     * interchangeable, which lets a reload keep the client of the airlines that did not change.
+     */
+    public static class Settings {
+        private final String name;
+        private final String address;
+        private final HttpClient.Version httpVersion;
+        private final Duration connectTimeout;
+        private final Duration timeout;
+        private final int maxConcurrentRequests;
+
+        /**
+         * @param name                  - Airline name, as found in its flights
+         * @param address               - Base address of the airline server
+         * @param httpVersion           - Preferred HTTP version, HTTP/2 falls back to HTTP/1.1
+         *                              when the airline does not support it
+         * @param connectTimeout        - Longest time to wait for a new connection
+         * @param timeout               - Longest time to wait for an answer
+         * @param maxConcurrentRequests - Maximum number of requests in flight to the airline
+         */
+        public Settings(String name, String address, HttpClient.Version httpVersion,
+                        Duration connectTimeout, Duration timeout, int maxConcurrentRequests) {
+            if (maxConcurrentRequests <= 0) {
+                throw new IllegalArgumentException(
+                        "The maximum number of concurrent requests must be positive: " + name);
+            }
+            this.name = name;
+            this.address = address;
+            this.httpVersion = httpVersion;
+            this.connectTimeout = connectTimeout;
+            this.timeout = timeout;
+            this.maxConcurrentRequests = maxConcurrentRequests;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Settings settings = (Settings) o;
+            return maxConcurrentRequests == settings.maxConcurrentRequests
+                    && name.equals(settings.name)
+                    && address.equals(settings.address)
+                    && httpVersion == settings.httpVersion
+                    && connectTimeout.equals(settings.connectTimeout)
+                    && timeout.equals(settings.timeout);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, address, httpVersion, connectTimeout, timeout,
+                    maxConcurrentRequests);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package services;
+
+import config.ServerConfig;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * The airlines searched and booked, ordered by name so every search contacts them in the same
+ * order.
+ * <p>The airlines can be loaded from a properties file and reloaded while the server runs. A
+ * reload swaps the whole set of airlines at once: searches already running keep the airlines
+ * they started with, and requests in flight complete on the client they were sent with. Airlines
+ * whose settings did not change keep their client and its open connections, the others get a
+ * new client and the client they replace is stopped.
+ */
+public class AirlineRegistry {
+    private static final String KEY_PREFIX = "airline.";
+    private static final String ADDRESS_SUFFIX = ".address";
+
+    private static final Map<String, String> BUILT_IN_AIRLINES =
+            Map.of("Delta Airlines", "http://127.0.0.1:9000",
+                    "Alaska Airlines", "http://127.0.0.1:9001",
+                    "Qatar Airways", "http://127.0.0.1:9002",
+                    "Singapore Airlines", "http://127.0.0.1:9003",
+                    "Japan Airlines", "http://127.0.0.1:9004",
+                    "JetBlue", "http://127.0.0.1:9005",
+                    "Hawaiian Airlines", "http://127.0.0.1:9006",
+                    "British Airways", "http://127.0.0.1:9007",
+                    "Korean air", "http://127.0.0.1:9008",
+                    "Lufthansa", "http://127.0.0.1:9009");
+
+    private final ServerConfig config;
+    private final UpstreamExecutor executor;
+    private volatile Map<String, AirlineEndpoint> airlines = Collections.emptyMap();
+    private volatile long loadedFileLastModified = -1;
+    private volatile Consumer<Collection<AirlineEndpoint>> addedAirlinesListener =
+            addedAirlines -> { };
+
+    /**
+     * Creates a registry of the ten built-in airlines on ports 9000 to 9009 of this machine
+     *
+     * @param config - Default settings of the airlines
+     */
+    public AirlineRegistry(ServerConfig config) {
+        this(config, (UpstreamExecutor) null);
+    }
+
+    /**
+     * Creates a registry of the built-in airlines, see {@link #AirlineRegistry(ServerConfig)}
+     *
+     * @param config   - Default settings of the airlines
+     * @param executor - Executor handling the answers of all the airlines, null for the default
+     *                 executor of each HTTP client
+     */
+    public AirlineRegistry(ServerConfig config, UpstreamExecutor executor) {
+        this.config = config;
+        this.executor = executor;
+        Map<String, AirlineEndpoint.Settings> builtInAirlines = new TreeMap<>();
+        BUILT_IN_AIRLINES.forEach((name, address) ->
+                builtInAirlines.put(name, defaultSettings(name, address)));
+        replaceAirlines(builtInAirlines);
+    }
+
+    private AirlineRegistry(ServerConfig config, Path airlinesFile, UpstreamExecutor executor)
+            throws IOException {
+        this.config = config;
+        this.executor = executor;
+        reloadIfModified(airlinesFile);
+    }
+
+    /**
+     * Loads the airlines from a properties file. Each airline has an identifier and an address,
+     * the other settings are optional and default to the server settings.
+     * <p>Example:
+     * <pre>
+     * airline.delta.name=Delta Airlines
+     * airline.delta.address=http://127.0.0.1:9000
+     * airline.delta.http.version=1.1
+     * airline.delta.connect.timeout.ms=500
+     * airline.delta.timeout.ms=1500
+     * airline.delta.max.concurrent.requests=32
+     * </pre>
+     *
+     * @param config - Default settings of the airlines
+     */
+    public static AirlineRegistry fromFile(Path airlinesFile, ServerConfig config)
+            throws IOException {
+        return fromFile(airlinesFile, config, null);
+    }
+
+    /**
+     * Loads the airlines from a properties file, see {@link #fromFile(Path, ServerConfig)}
+     *
+     * @param executor - Executor handling the answers of all the airlines, null for the default
+     *                 executor of each HTTP client
+     */
+    public static AirlineRegistry fromFile(Path airlinesFile, ServerConfig config,
+                                           UpstreamExecutor executor) throws IOException {
+        return new AirlineRegistry(config, airlinesFile, executor);
+    }
+
+    /**
+     * @return - the current airlines ordered by name
+     */
+    public Collection<AirlineEndpoint> getAirlines() {
+        return airlines.values();
+    }
+
+    /**
+     * @return - the airline with this name or null if it is not registered
+     */
+    public AirlineEndpoint get(String airline) {
+        return airlines.get(airline);
+    }
+
+    public int size() {
+        return airlines.size();
+    }
+
+    /**
+     * @param addedAirlinesListener - Receives the endpoints created by each later reload, such
+     *                              as to warm up their connections
+     */
+    public void setAddedAirlinesListener(
+            Consumer<Collection<AirlineEndpoint>> addedAirlinesListener) {
+        this.addedAirlinesListener = addedAirlinesListener;
+    }
+
+    /**
+     * Reloads the airlines from the file if it changed since it was last loaded. The current
+     * airlines are kept if the file is invalid.
+     *
+     * @return - true if the airlines were reloaded
+     */
+    public synchronized boolean reloadIfModified(Path airlinesFile) throws IOException {
+        long lastModified = Files.getLastModifiedTime(airlinesFile).toMillis();
+        if (lastModified == loadedFileLastModified) {
+            return false;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(airlinesFile)) {
+            properties.load(reader);
+        }
+        replaceAirlines(parseAirlines(properties));
+        loadedFileLastModified = lastModified;
+        return true;
+    }
+
+    /**
+     * Swaps in the new airlines, reusing the endpoint of each airline whose settings are
+     * unchanged. The endpoints left out are retired.
+     */
+    private synchronized void replaceAirlines(Map<String, AirlineEndpoint.Settings> settings) {
+        Map<String, AirlineEndpoint> currentAirlines = airlines;
+        Map<String, AirlineEndpoint> newAirlines = new TreeMap<>();
+        List<AirlineEndpoint> createdEndpoints = new ArrayList<>();
+        settings.forEach((name, airlineSettings) -> {
+            AirlineEndpoint currentEndpoint = currentAirlines.get(name);
+            if (currentEndpoint != null
+                    && currentEndpoint.getSettings().equals(airlineSettings)) {
+                newAirlines.put(name, currentEndpoint);
+                return;
+            }
+            AirlineEndpoint endpoint = new AirlineEndpoint(airlineSettings, new CircuitBreaker(
+                    config.getCircuitBreakerFailureThreshold(),
+                    config.getCircuitBreakerSlowCallThreshold(),
+                    config.getCircuitBreakerOpenDuration()), executor);
+            newAirlines.put(name, endpoint);
+            createdEndpoints.add(endpoint);
+        });
+        airlines = Collections.unmodifiableMap(newAirlines);
+        currentAirlines.forEach((name, endpoint) -> {
+            if (newAirlines.get(name) != endpoint) {
+                endpoint.retire();
+            }
+        });
+        if (!createdEndpoints.isEmpty()) {
+            addedAirlinesListener.accept(Collections.unmodifiableList(createdEndpoints));
+        }
+    }
+
+    private Map<String, AirlineEndpoint.Settings> parseAirlines(Properties properties) {
+        Map<String, AirlineEndpoint.Settings> settings = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.startsWith(KEY_PREFIX) || !key.endsWith(ADDRESS_SUFFIX)) {
+                continue;
+            }
+            String prefix = key.substring(0, key.length() - ADDRESS_SUFFIX.length()) + ".";
+            String name = properties.getProperty(prefix + "name",
+                    prefix.substring(KEY_PREFIX.length(), prefix.length() - 1)).trim();
+            String address = properties.getProperty(key).trim();
+            // Rejects a malformed address before it replaces the current airlines
+            URI.create(address);
+
+            AirlineEndpoint.Settings airlineSettings = new AirlineEndpoint.Settings(
+                    name,
+                    address,
+                    getHttpVersion(properties, prefix + "http.version",
+                            config.getUpstreamHttpVersion()),
+                    getDuration(properties, prefix + "connect.timeout.ms",
+                            config.getUpstreamConnectTimeout()),
+                    getDuration(properties, prefix + "timeout.ms", config.getAirlineTimeout()),
+                    getInt(properties, prefix + "max.concurrent.requests",
+                            config.getUpstreamMaxConcurrentRequests()));
+            if (settings.put(name, airlineSettings) != null) {
+                throw new IllegalArgumentException("Airline registered twice: " + name);
+            }
+        }
+        return settings;
+    }
+
+    private AirlineEndpoint.Settings defaultSettings(String name, String address) {
+        return new AirlineEndpoint.Settings(name, address,
+                parseHttpVersion(config.getUpstreamHttpVersion()),
+                config.getUpstreamConnectTimeout(),
+                config.getAirlineTimeout(),
+                config.getUpstreamMaxConcurrentRequests());
+    }
+
+    private static HttpClient.Version getHttpVersion(Properties properties, String key,
+                                                     String defaultValue) {
+        return parseHttpVersion(properties.getProperty(key, defaultValue));
+    }
+
+    /**
+     * Accepts 2, 1.1, HTTP/2, HTTP_2, HTTP/1.1 or HTTP_1_1
+     */
+    private static HttpClient.Version parseHttpVersion(String value) {
+        String version = value.trim().toUpperCase(Locale.ROOT)
+                .replace("HTTP", "")
+                .replace("/", "")
+                .replace("_", ".");
+        if (version.startsWith(".")) {
+            version = version.substring(1);
+        }
+        switch (version) {
+            case "2":
+                return HttpClient.Version.HTTP_2;
+            case "1.1":
+                return HttpClient.Version.HTTP_1_1;
+            default:
+                throw new IllegalArgumentException("Unsupported HTTP version: " + value);
+        }
+    }
+
+    private static Duration getDuration(Properties properties, String key,
+                                        Duration defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.isBlank()
+                ? defaultValue
+                : Duration.ofMillis(Long.parseLong(value.trim()));
+    }
+
+    private static int getInt(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+}
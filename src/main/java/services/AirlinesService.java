@@ -1,27 +1,69 @@
 package services;
 
 import model.Flight;
+import model.SearchFilter;
+import model.SearchResult;
 import model.TicketReservationRequest;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 public interface AirlinesService {
+    /**
+     * Returned instead of a confirmation number when the flight is known to have fewer seats
+     * left than requested, so the airline was not called
+     */
+    long NOT_ENOUGH_SEATS = -2;
 
     /**
-     * Finds and returns all the available flights for the given route and date
+     * Finds the available flights for the given route and date that match the filter, and
+     * reports each of them to the callback, on the calling thread, as soon as its airline has
+     * answered. Flights are reported in the order they arrive and before the limit of the
+     * filter is applied, so the returned flights are the final answer. The result also tells
+     * whether every included airline answered, so an incomplete answer is not kept as if it
+     * held every flight.
+     * <p>This and {@link #searchAllFlights} are the searches each layer of the service
+     * overrides. {@link FlightSearches} returns only the flights on top of them, so no search
+     * goes around a layer.
      *
      * @param origin      - The airport code from which the client is departing (Example : lax)
      * @param destination - The airport code where the client wants to arrive (Example: sfo)
      * @param date        - The date on which the client wants to fly from the origin to the
      *                    destination
-     * @param referer    - The website where the initial request came from
+     * @param referer     - The website where the initial request came from
+     * @param filter      - Flights and airlines to include, and maximum number of flights to
+     *                    return
+     * @param onFlight    - Receives each matching flight as soon as it is known
+     * @return - the matching flights from the cheapest to the most expensive
      */
-    List<Flight> findAllFlight(String origin, String destination, LocalDate date, Optional<String> referer);
+    SearchResult searchFlights(String origin, String destination, LocalDate date,
+                               Optional<String> referer, SearchFilter filter,
+                               Consumer<Flight> onFlight);
 
-    default List<Flight> findAllFlight(String origin, String destination, LocalDate date) {
-        return findAllFlight(origin, destination, date, Optional.empty());
+    /**
+     * Finds the available flights matching the filter for every day of a range of dates, and
+     * tells for each day whether every included airline answered. Each day is reported to the
+     * callback, on the calling thread, as soon as its flights are known, so days may be
+     * reported out of order.
+     *
+     * @param from           - The first date of the range
+     * @param to             - The last date of the range, included
+     * @param filter         - Flights and airlines to include, and maximum number of flights
+     *                       to return for each day
+     * @param onDayCompleted - Receives each date of the range with its matching flights, from
+     *                       the cheapest to the most expensive
+     */
+    default void searchAllFlights(String origin, String destination, LocalDate from,
+                                  LocalDate to, Optional<String> referer, SearchFilter filter,
+                                  BiConsumer<LocalDate, SearchResult> onDayCompleted) {
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            onDayCompleted.accept(date, searchFlights(origin, destination, date, referer,
+                    filter, flight -> { }));
+        }
     }
 
     /**
@@ -30,4 +72,19 @@ public interface AirlinesService {
      * @return - a positive confirmation number upon success or a negative number upon failure
      */
     long reserveFlight(TicketReservationRequest request);
+
+    /**
+     * Attempts to reserve several flights on behalf of the client. Each reservation succeeds or
+     * fails on its own.
+     *
+     * @return - for each request, in the same order, a positive confirmation number upon success
+     * or a negative number upon failure
+     */
+    default List<Long> reserveFlights(List<TicketReservationRequest> requests) {
+        List<Long> confirmationNumbers = new ArrayList<>(requests.size());
+        for (TicketReservationRequest request : requests) {
+            confirmationNumbers.add(reserveFlight(request));
+        }
+        return confirmationNumbers;
+    }
 }
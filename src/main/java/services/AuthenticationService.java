@@ -1,35 +1,120 @@
 package services;
 
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 public class AuthenticationService {
     private static final String AUTHENTICATION_KEY = "flight_reservation_auth";
     private static final Set<String> AUTHENTICATED_VALUES = Set.of("abcd", "aabbccc");
 
+    private final TokenStore tokenStore;
+
+    public AuthenticationService() {
+        this(new InMemoryTokenStore(AUTHENTICATED_VALUES));
+    }
+
+    public AuthenticationService(TokenStore tokenStore) {
+        this.tokenStore = tokenStore;
+    }
+
     /**
      * Returns true if one of the cookies contains a valid authentication token
      *
-     * @param cookies - a list of cookie headers in the format of "key=value" pair
+     * @param cookies - a list of Cookie headers, each holding one or more "key=value" pairs
+     *                separated by ";" (Example: "theme=dark; flight_reservation_auth=abcd")
      */
     public boolean check(List<String> cookies) {
         if (cookies == null) {
             return false;
         }
-        Map<String, String> keyValuePairs = getCookiesKeyValuePairs(cookies);
+        for (int i = 0; i < cookies.size(); i++) {
+            if (containsValidToken(cookies.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        return keyValuePairs.entrySet()
-                .stream()
-                .filter(e -> e.getKey().equals(AUTHENTICATION_KEY))
-                .anyMatch(e -> AUTHENTICATED_VALUES.contains(e.getValue()));
+    /**
+     * Finds the valid authentication token of the cookies, to tell authenticated clients apart
+     *
+     * @param cookies - a list of Cookie headers, as in {@link #check(List)}
+     * @return - the first valid token, or null if none of the cookies holds one
+     */
+    public String findValidToken(List<String> cookies) {
+        if (cookies == null) {
+            return null;
+        }
+        for (int i = 0; i < cookies.size(); i++) {
+            long token = locateValidToken(cookies.get(i));
+            if (token >= 0) {
+                return cookies.get(i).substring((int) (token >>> 32), (int) token);
+            }
+        }
+        return null;
     }
 
-    private Map<String, String> getCookiesKeyValuePairs(List<String> cookies) {
-        return cookies.stream()
-                .filter(pair -> pair.contains("=") && pair.length() > 2)
-                .collect(Collectors.toMap(pair -> pair.substring(0, pair.indexOf("="))
-                        , pair -> pair.substring(pair.indexOf("=") + 1)));
+    private boolean containsValidToken(String cookieHeader) {
+        return locateValidToken(cookieHeader) >= 0;
+    }
+
+    /**
+     * Scans a Cookie header once, checking the value of every authentication cookie in place
+     *
+     * @return - the start index of the first valid token in the high 32 bits and its end index
+     * in the low 32 bits, or -1 if the header holds no valid token
+     */
+    private long locateValidToken(String cookieHeader) {
+        int length = cookieHeader.length();
+        int position = 0;
+        while (position < length) {
+            int nameStart = skipSpaces(cookieHeader, position, length);
+            int equalsSign = -1;
+            int pairEnd = nameStart;
+            while (pairEnd < length && cookieHeader.charAt(pairEnd) != ';') {
+                if (equalsSign < 0 && cookieHeader.charAt(pairEnd) == '=') {
+                    equalsSign = pairEnd;
+                }
+                pairEnd++;
+            }
+            position = pairEnd + 1;
+
+            if (equalsSign < 0) {
+                continue;
+            }
+            int nameEnd = trimSpacesBackwards(cookieHeader, nameStart, equalsSign);
+            if (nameEnd - nameStart != AUTHENTICATION_KEY.length()
+                    || !cookieHeader.regionMatches(nameStart, AUTHENTICATION_KEY, 0,
+                    AUTHENTICATION_KEY.length())) {
+                continue;
+            }
+
+            int valueStart = skipSpaces(cookieHeader, equalsSign + 1, pairEnd);
+            int valueEnd = trimSpacesBackwards(cookieHeader, valueStart, pairEnd);
+            if (valueEnd - valueStart >= 2
+                    && cookieHeader.charAt(valueStart) == '"'
+                    && cookieHeader.charAt(valueEnd - 1) == '"') {
+                valueStart++;
+                valueEnd--;
+            }
+            if (valueEnd > valueStart && tokenStore.isValid(cookieHeader, valueStart, valueEnd)) {
+                return ((long) valueStart << 32) | valueEnd;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipSpaces(String text, int start, int end) {
+        while (start < end && text.charAt(start) == ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimSpacesBackwards(String text, int start, int end) {
+        while (end > start && text.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return end;
     }
 }
@@ -0,0 +1,455 @@
+package services;
+
+import model.Flight;
+import model.SearchFilter;
+import model.SearchResult;
+import model.TicketReservationRequest;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Caches the search results of another {@link AirlinesService} by route and date.
+ * <ul>
+ *     <li>Entries expire after a fixed time to live</li>
+ *     <li>The least recently used entry is evicted once the cache is full</li>
+ *     <li>Concurrent misses on the same route and date wait for a single search instead of
+ *     each searching the airlines</li>
+ *     <li>A successful reservation drops the cached route and date of the reserved flight,
+ *     since its number of available seats changed</li>
+ *     <li>Only complete answers are cached. An answer missing some airlines, because they
+ *     were skipped, failed or were too slow, is returned but searched again next time</li>
+ *     <li>An answer is not cached if its route and date was invalidated while it was being
+ *     searched, since it may predate the reservation</li>
+ * </ul>
+ */
+public class CachingAirlinesService implements AirlinesService {
+    private final AirlinesService airlinesService;
+    private final long timeToLiveNanos;
+    private final int maxEntries;
+
+    // Access ordered, so iteration starts with the least recently used entry
+    private final LinkedHashMap<SearchKey, CacheEntry> entries;
+    private final Map<SearchKey, CompletableFuture<SearchResult>> searchesInFlight =
+            new ConcurrentHashMap<>();
+    // From a flight to the cached search which returned it, used for invalidation
+    private final Map<FlightKey, SearchKey> flightToSearch = new ConcurrentHashMap<>();
+    // Invalidations are numbered so a search can tell whether its route and date was
+    // invalidated while it was in flight. Guarded by entries, like the fields below
+    private long invalidationCount;
+    // Number of the latest invalidation of the recently invalidated routes and dates
+    private final LinkedHashMap<SearchKey, Long> invalidatedAt;
+    // Number of the latest invalidation which may concern any route and date, because the
+    // route of the reserved flight was unknown or was dropped from invalidatedAt
+    private long anyRouteInvalidatedAt;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalescedMisses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder incompleteResults = new LongAdder();
+    private final LongAdder staleResults = new LongAdder();
+
+    /**
+     * @param airlinesService - The service searching the airlines on a cache miss
+     * @param timeToLive      - How long a search result is served from the cache
+     * @param maxEntries      - Maximum number of route and date combinations kept in the cache
+     */
+    public CachingAirlinesService(AirlinesService airlinesService, Duration timeToLive,
+                                  int maxEntries) {
+        this.airlinesService = airlinesService;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SearchKey, CacheEntry> eldest) {
+                if (size() > CachingAirlinesService.this.maxEntries) {
+                    evictions.increment();
+                    unindexFlights(eldest.getKey(), eldest.getValue().flights);
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.invalidatedAt = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SearchKey, Long> eldest) {
+                if (size() > CachingAirlinesService.this.maxEntries) {
+                    anyRouteInvalidatedAt = eldest.getValue();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Reports the cached flights at once on a hit. On a miss the flights are reported as the
+     * airlines answer and then cached, unless the filter is restricted to some airlines.
+     */
+    @Override
+    public SearchResult searchFlights(String origin, String destination, LocalDate date,
+                                      Optional<String> referer, SearchFilter filter,
+                                      Consumer<Flight> onFlight) {
+        Consumer<Flight> onMatchingFlight = flight -> {
+            if (filter.matches(flight)) {
+                onFlight.accept(flight);
+            }
+        };
+        if (filter.restrictsAirlines()) {
+            List<Flight> cachedFlights = getIfFresh(new SearchKey(origin, destination, date));
+            if (cachedFlights == null) {
+                misses.increment();
+                return airlinesService.searchFlights(origin, destination, date, referer, filter,
+                        onFlight);
+            }
+            hits.increment();
+            cachedFlights.forEach(onMatchingFlight);
+            return SearchResult.complete(filter.apply(cachedFlights));
+        }
+        SearchResult result = search(origin, destination, date, referer, onMatchingFlight);
+        return new SearchResult(filter.apply(result.getFlights()), result.isComplete());
+    }
+
+    /**
+     * Returns the cached flights of the route and date, or searches them on a miss
+     *
+     * @param onFlight - Receives each flight, as soon as its airline answers when this call
+     *                 searches the airlines itself
+     */
+    private SearchResult search(String origin, String destination, LocalDate date,
+                                Optional<String> referer, Consumer<Flight> onFlight) {
+        SearchKey key = new SearchKey(origin, destination, date);
+        List<Flight> cachedFlights = getIfFresh(key);
+        if (cachedFlights != null) {
+            hits.increment();
+            cachedFlights.forEach(onFlight);
+            return SearchResult.complete(cachedFlights);
+        }
+        misses.increment();
+
+        CompletableFuture<SearchResult> search = new CompletableFuture<>();
+        CompletableFuture<SearchResult> searchInFlight = searchesInFlight.putIfAbsent(key, search);
+        if (searchInFlight != null) {
+            coalescedMisses.increment();
+            SearchResult result = searchInFlight.join();
+            result.getFlights().forEach(onFlight);
+            return result;
+        }
+
+        try {
+            long generation = currentGeneration();
+            SearchResult upstreamResult = airlinesService.searchFlights(origin, destination,
+                    date, referer, SearchFilter.none(), onFlight);
+            SearchResult result = new SearchResult(
+                    Collections.unmodifiableList(upstreamResult.getFlights()),
+                    upstreamResult.isComplete());
+            putIfComplete(key, result, generation);
+            search.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            search.completeExceptionally(e);
+            throw e;
+        } finally {
+            searchesInFlight.remove(key, search);
+        }
+    }
+
+    /**
+     * Reports the cached days first, then searches the span of days missing from the cache in
+     * a single range search. The days searched are cached, unless the filter is restricted to
+     * some airlines.
+     */
+    @Override
+    public void searchAllFlights(String origin, String destination, LocalDate from,
+                                 LocalDate to, Optional<String> referer, SearchFilter filter,
+                                 BiConsumer<LocalDate, SearchResult> onDayCompleted) {
+        TreeSet<LocalDate> missingDays = new TreeSet<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            List<Flight> cachedFlights = getIfFresh(new SearchKey(origin, destination, date));
+            if (cachedFlights != null) {
+                hits.increment();
+                onDayCompleted.accept(date, SearchResult.complete(filter.apply(cachedFlights)));
+            } else {
+                misses.increment();
+                missingDays.add(date);
+            }
+        }
+        if (missingDays.isEmpty()) {
+            return;
+        }
+
+        LocalDate firstMissingDay = missingDays.first();
+        LocalDate lastMissingDay = missingDays.last();
+        if (filter.restrictsAirlines()) {
+            airlinesService.searchAllFlights(origin, destination, firstMissingDay,
+                    lastMissingDay, referer, filter, (date, result) -> {
+                        if (missingDays.contains(date)) {
+                            onDayCompleted.accept(date, result);
+                        }
+                    });
+            return;
+        }
+        long generation = currentGeneration();
+        airlinesService.searchAllFlights(origin, destination, firstMissingDay, lastMissingDay,
+                referer, SearchFilter.none(), (date, upstreamResult) -> {
+                    if (!missingDays.contains(date)) {
+                        return;
+                    }
+                    SearchResult result = new SearchResult(
+                            Collections.unmodifiableList(upstreamResult.getFlights()),
+                            upstreamResult.isComplete());
+                    putIfComplete(new SearchKey(origin, destination, date), result, generation);
+                    onDayCompleted.accept(date, new SearchResult(filter.apply(result.getFlights()),
+                            result.isComplete()));
+                });
+    }
+
+    @Override
+    public long reserveFlight(TicketReservationRequest request) {
+        long confirmationNumber = airlinesService.reserveFlight(request);
+        if (confirmationNumber > 0) {
+            invalidateSearchOf(request);
+        }
+        return confirmationNumber;
+    }
+
+    @Override
+    public List<Long> reserveFlights(List<TicketReservationRequest> requests) {
+        List<Long> confirmationNumbers = airlinesService.reserveFlights(requests);
+        for (int i = 0; i < requests.size(); i++) {
+            if (confirmationNumbers.get(i) > 0) {
+                invalidateSearchOf(requests.get(i));
+            }
+        }
+        return confirmationNumbers;
+    }
+
+    /**
+     * Drops the cached flights of a route and date
+     */
+    public void invalidate(String origin, String destination, LocalDate date) {
+        invalidate(new SearchKey(origin, destination, date));
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Number of misses which waited for a search already in flight instead of starting one
+     */
+    public long getCoalescedMisses() {
+        return coalescedMisses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    /**
+     * Number of answers not cached because some airlines were missing from them
+     */
+    public long getIncompleteResults() {
+        return incompleteResults.sum();
+    }
+
+    /**
+     * Number of complete answers not cached because their route and date was invalidated while
+     * they were being searched
+     */
+    public long getStaleResults() {
+        return staleResults.sum();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private List<Flight> getIfFresh(SearchKey key) {
+        synchronized (entries) {
+            CacheEntry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.createdAtNanos > timeToLiveNanos) {
+                entries.remove(key);
+                unindexFlights(key, entry.flights);
+                return null;
+            }
+            return entry.flights;
+        }
+    }
+
+    /**
+     * @return - the number of the latest invalidation, to be read before searching the airlines
+     */
+    private long currentGeneration() {
+        synchronized (entries) {
+            return invalidationCount;
+        }
+    }
+
+    /**
+     * @param generation - The number of the latest invalidation when the search started
+     */
+    private void putIfComplete(SearchKey key, SearchResult result, long generation) {
+        if (result.isComplete()) {
+            put(key, result.getFlights(), generation);
+        } else {
+            incompleteResults.increment();
+        }
+    }
+
+    /**
+     * Caches the flights unless their route and date was invalidated since the search started.
+     * The flights are indexed while holding the lock, so a reservation of one of them either
+     * comes first and drops the write, or comes after and finds the entry to invalidate.
+     */
+    private void put(SearchKey key, List<Flight> flights, long generation) {
+        synchronized (entries) {
+            long lastInvalidation = Math.max(invalidatedAt.getOrDefault(key, 0L),
+                    anyRouteInvalidatedAt);
+            if (lastInvalidation > generation) {
+                staleResults.increment();
+                return;
+            }
+            CacheEntry previousEntry = entries.put(key, new CacheEntry(flights, System.nanoTime()));
+            if (previousEntry != null) {
+                unindexFlights(key, previousEntry.flights);
+            }
+            for (Flight flight : flights) {
+                flightToSearch.put(new FlightKey(flight.getAirlineName(), flight.getId()), key);
+            }
+        }
+    }
+
+    /**
+     * Invalidates the cached search of the reserved flight. If the flight is not cached, for
+     * instance because its entry expired, a search of its route and date may be in flight, so
+     * none of the searches in flight may cache its answer.
+     */
+    private void invalidateSearchOf(TicketReservationRequest request) {
+        synchronized (entries) {
+            SearchKey key = flightToSearch.remove(
+                    new FlightKey(request.getAirlineName(), request.getId()));
+            if (key == null) {
+                anyRouteInvalidatedAt = ++invalidationCount;
+                return;
+            }
+            invalidate(key);
+        }
+    }
+
+    private void invalidate(SearchKey key) {
+        CacheEntry entry;
+        synchronized (entries) {
+            // Removed first, so invalidatedAt stays ordered by invalidation number
+            invalidatedAt.remove(key);
+            invalidatedAt.put(key, ++invalidationCount);
+            entry = entries.remove(key);
+        }
+        if (entry != null) {
+            invalidations.increment();
+            unindexFlights(key, entry.flights);
+        }
+    }
+
+    private void unindexFlights(SearchKey key, List<Flight> flights) {
+        for (Flight flight : flights) {
+            flightToSearch.remove(new FlightKey(flight.getAirlineName(), flight.getId()), key);
+        }
+    }
+
+    private static class CacheEntry {
+        private final List<Flight> flights;
+        private final long createdAtNanos;
+
+        private CacheEntry(List<Flight> flights, long createdAtNanos) {
+            this.flights = flights;
+            this.createdAtNanos = createdAtNanos;
+        }
+    }
+
+    private static class SearchKey {
+        private final String origin;
+        private final String destination;
+        private final LocalDate date;
+
+        private SearchKey(String origin, String destination, LocalDate date) {
+            this.origin = origin.toLowerCase(Locale.ROOT);
+            this.destination = destination.toLowerCase(Locale.ROOT);
+            this.date = date;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SearchKey)) {
+                return false;
+            }
+            SearchKey other = (SearchKey) o;
+            return origin.equals(other.origin)
+                    && destination.equals(other.destination)
+                    && date.equals(other.date);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(origin, destination, date);
+        }
+    }
+
+    private static class FlightKey {
+        private final String airlineName;
+        private final int id;
+
+        private FlightKey(String airlineName, int id) {
+            this.airlineName = airlineName;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof FlightKey)) {
+                return false;
+            }
+            FlightKey other = (FlightKey) o;
+            return id == other.id && Objects.equals(airlineName, other.airlineName);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(airlineName) + id;
+        }
+    }
+}
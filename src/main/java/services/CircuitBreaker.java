@@ -0,0 +1,102 @@
+package services;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stops calling an airline after it failed or answered too slowly several times in a row.
+ * <p>While open, calls are rejected without contacting the airline. Once the open duration has
+ * elapsed a single probe call is let through: the breaker closes if it succeeds and opens again
+ * if it fails.
+ */
+public class CircuitBreaker {
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long slowCallThresholdNanos;
+    private final long openDurationNanos;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final LongAdder rejectedCalls = new LongAdder();
+    private volatile long openedAtNanos;
+
+    /**
+     * @param failureThreshold  - Number of consecutive failed or slow calls opening the breaker
+     * @param slowCallThreshold - A successful call taking longer than this counts as a failure
+     * @param openDuration      - How long calls are rejected before a probe is let through
+     */
+    public CircuitBreaker(int failureThreshold, Duration slowCallThreshold,
+                          Duration openDuration) {
+        this.failureThreshold = failureThreshold;
+        this.slowCallThresholdNanos = slowCallThreshold.toNanos();
+        this.openDurationNanos = openDuration.toNanos();
+    }
+
+    /**
+     * @return - true if the call may go ahead. The caller must then report its outcome with
+     * {@link #onSuccess(long)} or {@link #onFailure()}, or give the permission back with
+     * {@link #releasePermission()} if the call ended without an outcome
+     */
+    public boolean tryAcquirePermission() {
+        State currentState = state.get();
+        if (currentState == State.CLOSED) {
+            return true;
+        }
+        if (currentState == State.OPEN
+                && System.nanoTime() - openedAtNanos >= openDurationNanos
+                && state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+            return true;
+        }
+        rejectedCalls.increment();
+        return false;
+    }
+
+    public void onSuccess(long latencyNanos) {
+        if (latencyNanos > slowCallThresholdNanos) {
+            onFailure();
+            return;
+        }
+        consecutiveFailures.set(0);
+        state.set(State.CLOSED);
+    }
+
+    /**
+     * Gives back a permission whose call was not made or was cancelled before the airline
+     * answered, such as a hedged request made useless by the other attempt. If the call was the
+     * probe, the breaker opens again without restarting its open duration, so the next call is
+     * the new probe instead of the breaker waiting forever for an outcome.
+     */
+    public void releasePermission() {
+        state.compareAndSet(State.HALF_OPEN, State.OPEN);
+    }
+
+    public void onFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (state.get() == State.HALF_OPEN || failures >= failureThreshold) {
+            openedAtNanos = System.nanoTime();
+            state.set(State.OPEN);
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    /**
+     * Number of calls rejected because the breaker was open
+     */
+    public long getRejectedCalls() {
+        return rejectedCalls.sum();
+    }
+}
@@ -1,12 +1,15 @@
 package services;
 
 import model.Flight;
+import model.SearchFilter;
+import model.SearchResult;
 import model.TicketReservationRequest;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
 
 public class FakeAirlinesService implements AirlinesService {
@@ -14,10 +17,17 @@ public class FakeAirlinesService implements AirlinesService {
     private final ThreadLocalRandom random = ThreadLocalRandom.current();
 
     @Override
-    public List<Flight> findAllFlight(String origin, String destination, LocalDate date,
-                                      Optional<String> referer) {
-        return List.of(new Flight(1, "Lufthansa", 300, 2, 4, date),
+    public SearchResult searchFlights(String origin, String destination, LocalDate date,
+                                      Optional<String> referer, SearchFilter filter,
+                                      Consumer<Flight> onFlight) {
+        List<Flight> flights = List.of(new Flight(1, "Lufthansa", 300, 2, 4, date),
                 new Flight(2, "Hawaiian Airlines", 340, 2, 7, date));
+        for (Flight flight : flights) {
+            if (filter.matches(flight)) {
+                onFlight.accept(flight);
+            }
+        }
+        return SearchResult.complete(filter.apply(flights));
     }
 
     @Override
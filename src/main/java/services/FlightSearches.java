@@ -0,0 +1,70 @@
+package services;
+
+import model.Flight;
+import model.SearchFilter;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Searches returning only the flights, for callers that do not need to know whether every
+ * airline answered. They are built on {@link AirlinesService#searchFlights} and
+ * {@link AirlinesService#searchAllFlights}, so they go through every layer of the service.
+ */
+public final class FlightSearches {
+    private FlightSearches() {
+    }
+
+    /**
+     * Finds all the available flights for the given route and date
+     */
+    public static List<Flight> findAllFlight(AirlinesService airlinesService, String origin,
+                                             String destination, LocalDate date) {
+        return findFlights(airlinesService, origin, destination, date, Optional.empty(),
+                SearchFilter.none());
+    }
+
+    /**
+     * Finds the available flights for the given route and date that match the filter
+     *
+     * @return - the matching flights from the cheapest to the most expensive
+     */
+    public static List<Flight> findFlights(AirlinesService airlinesService, String origin,
+                                           String destination, LocalDate date,
+                                           Optional<String> referer, SearchFilter filter) {
+        return findFlights(airlinesService, origin, destination, date, referer, filter,
+                flight -> { });
+    }
+
+    /**
+     * Finds the matching flights like {@link AirlinesService#searchFlights}
+     *
+     * @param onFlight - Receives each matching flight as soon as it is known
+     * @return - the matching flights from the cheapest to the most expensive
+     */
+    public static List<Flight> findFlights(AirlinesService airlinesService, String origin,
+                                           String destination, LocalDate date,
+                                           Optional<String> referer, SearchFilter filter,
+                                           Consumer<Flight> onFlight) {
+        return airlinesService.searchFlights(origin, destination, date, referer, filter,
+                onFlight).getFlights();
+    }
+
+    /**
+     * Finds the matching flights of every day of a range like
+     * {@link AirlinesService#searchAllFlights}
+     *
+     * @param onDayCompleted - Receives each date of the range with its matching flights, from
+     *                       the cheapest to the most expensive
+     */
+    public static void findAllFlights(AirlinesService airlinesService, String origin,
+                                      String destination, LocalDate from, LocalDate to,
+                                      Optional<String> referer, SearchFilter filter,
+                                      BiConsumer<LocalDate, List<Flight>> onDayCompleted) {
+        airlinesService.searchAllFlights(origin, destination, from, to, referer, filter,
+                (date, result) -> onDayCompleted.accept(date, result.getFlights()));
+    }
+}
@@ -0,0 +1,49 @@
+package services;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps the hedged requests at a percentage of the requests, so hedging cannot multiply the
+ * load on the airlines when they all slow down at once.
+ * <p>Each request deposits a fraction of a hedge and each hedge withdraws a whole one. The
+ * balance is capped, which lets a short run of slow answers be hedged without saving up
+ * hedges over a long quiet period.
+ */
+class HedgeBudget {
+    private static final long HEDGE_COST = 100;
+    private static final long MAX_SAVED_HEDGES = 10;
+
+    private final long depositPerRequest;
+    private final long maxBalance;
+    private final AtomicLong balance = new AtomicLong();
+
+    /**
+     * @param percent - Maximum number of hedges per hundred requests
+     */
+    HedgeBudget(int percent) {
+        this.depositPerRequest = Math.max(0, Math.min(percent, 100)) * HEDGE_COST / 100;
+        this.maxBalance = HEDGE_COST * MAX_SAVED_HEDGES;
+    }
+
+    void onRequest() {
+        if (balance.get() < maxBalance) {
+            balance.accumulateAndGet(depositPerRequest,
+                    (current, deposit) -> Math.min(current + deposit, maxBalance));
+        }
+    }
+
+    /**
+     * @return - true if a hedge may be sent
+     */
+    boolean tryAcquire() {
+        while (true) {
+            long current = balance.get();
+            if (current < HEDGE_COST) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - HEDGE_COST)) {
+                return true;
+            }
+        }
+    }
+}
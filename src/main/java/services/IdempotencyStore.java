@@ -0,0 +1,311 @@
+package services;
+
+import logging.RequestLogger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Remembers the confirmation number of each reservation sent with an idempotency key, so a
+ * client retrying the same reservation gets the original confirmation instead of a second
+ * booking.
+ * <ul>
+ *     <li>Keys belong to the client which sent them, the same key sent by another client is
+ *     another reservation</li>
+ *     <li>A retry arriving while the first attempt is still waiting for the airline waits for
+ *     that attempt instead of calling the airline again</li>
+ *     <li>Only confirmed reservations are remembered, a failed one may be retried</li>
+ *     <li>Keys expire after a fixed time to live, and the oldest keys are dropped once the
+ *     store is full</li>
+ *     <li>Confirmed reservations can be appended to a file, read back on startup</li>
+ * </ul>
+ */
+public class IdempotencyStore {
+    private static final Pattern VALID_KEY = Pattern.compile("[\\x21-\\x7E]{1,255}");
+    private static final char SEPARATOR = '\t';
+    private static final char OWNER_SEPARATOR = ' ';
+    private static final RequestLogger LOGGER = RequestLogger.get();
+
+    private final long timeToLiveMillis;
+    private final int maxEntries;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Entries in insertion order, which is also their expiry order, one per remembered key
+    private final Deque<Entry> insertionOrder = new ConcurrentLinkedDeque<>();
+    private final BufferedWriter journal;
+
+    /**
+     * @param timeToLive - How long a confirmation is returned for its key
+     * @param maxEntries - Maximum number of keys remembered
+     */
+    public IdempotencyStore(Duration timeToLive, int maxEntries) {
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.maxEntries = maxEntries;
+        this.journal = null;
+    }
+
+    private IdempotencyStore(Duration timeToLive, int maxEntries, Path journalFile)
+            throws IOException {
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.maxEntries = maxEntries;
+        if (Files.exists(journalFile)) {
+            load(journalFile);
+        }
+        this.journal = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Creates a store appending each confirmed reservation to a file. The unexpired
+     * reservations of the file are loaded first, and the file is rewritten without the
+     * expired ones.
+     * <p>Each line holds the key scoped to its owner, the URL encoded request fingerprint, the
+     * confirmation number and the expiry time in epoch milliseconds, separated by tabs.
+     */
+    public static IdempotencyStore withJournal(Duration timeToLive, int maxEntries,
+                                               Path journalFile) throws IOException {
+        return new IdempotencyStore(timeToLive, maxEntries, journalFile);
+    }
+
+    /**
+     * @return - true if the key is made of 1 to 255 visible ASCII characters
+     */
+    public static boolean isValidKey(String key) {
+        return VALID_KEY.matcher(key).matches();
+    }
+
+    /**
+     * Runs the reservation once per key and owner
+     *
+     * @param owner       - Identifies the client, such as its authentication token. It is only
+     *                    kept as a digest.
+     * @param key         - Idempotency key sent by the client
+     * @param fingerprint - Identifies the reservation, so a key reused for another reservation
+     *                    is detected
+     * @param reservation - Sends the reservation to the airline and returns its confirmation
+     *                    number
+     */
+    public Outcome reserve(String owner, String key, String fingerprint,
+                           LongSupplier reservation) {
+        long nowMillis = System.currentTimeMillis();
+        key = digestOf(owner) + OWNER_SEPARATOR + key;
+        Entry newEntry = new Entry(key, fingerprint, nowMillis + timeToLiveMillis);
+        while (true) {
+            Entry entry = entries.putIfAbsent(key, newEntry);
+            if (entry == null) {
+                break;
+            }
+            if (entry.expiresAtMillis < nowMillis) {
+                entries.remove(key, entry);
+                continue;
+            }
+            if (!entry.fingerprint.equals(fingerprint)) {
+                return Outcome.CONFLICT;
+            }
+            // A first attempt which failed with an exception counts as a failed reservation
+            long confirmationNumber = entry.confirmationNumber.exceptionally(e -> -1L).join();
+            return new Outcome(confirmationNumber, true, false);
+        }
+        insertionOrder.addLast(newEntry);
+        evict(nowMillis);
+
+        long confirmationNumber;
+        try {
+            confirmationNumber = reservation.getAsLong();
+        } catch (RuntimeException e) {
+            forget(newEntry);
+            newEntry.confirmationNumber.completeExceptionally(e);
+            throw e;
+        }
+        if (confirmationNumber > 0) {
+            append(key, newEntry, confirmationNumber);
+        } else {
+            forget(newEntry);
+        }
+        newEntry.confirmationNumber.complete(confirmationNumber);
+        return new Outcome(confirmationNumber, false, false);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Drops expired keys, then the oldest keys while the store is over capacity. Reservations
+     * still waiting for the airline are never dropped.
+     */
+    private void evict(long nowMillis) {
+        while (true) {
+            Entry oldestEntry = insertionOrder.peekFirst();
+            if (oldestEntry == null) {
+                return;
+            }
+            // An entry replaced after it expired is only dropped from the queue
+            if (entries.get(oldestEntry.key) == oldestEntry) {
+                boolean expired = oldestEntry.expiresAtMillis < nowMillis;
+                if (!expired && entries.size() <= maxEntries) {
+                    return;
+                }
+                if (!oldestEntry.confirmationNumber.isDone()) {
+                    return;
+                }
+                entries.remove(oldestEntry.key, oldestEntry);
+            }
+            insertionOrder.removeFirstOccurrence(oldestEntry);
+        }
+    }
+
+    /**
+     * Forgets the key of a failed reservation, so it may be retried. The entry was queued
+     * recently, so it is looked for from the newest end of the queue.
+     */
+    private void forget(Entry entry) {
+        entries.remove(entry.key, entry);
+        insertionOrder.removeLastOccurrence(entry);
+    }
+
+    /**
+     * @return - a digest of the owner, so the owners of the keys are not written as they are
+     */
+    private static String digestOf(String owner) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(owner.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private void append(String key, Entry entry, long confirmationNumber) {
+        if (journal == null) {
+            return;
+        }
+        synchronized (journal) {
+            try {
+                journal.write(key + SEPARATOR
+                        + URLEncoder.encode(entry.fingerprint, StandardCharsets.UTF_8) + SEPARATOR
+                        + confirmationNumber + SEPARATOR + entry.expiresAtMillis);
+                journal.newLine();
+                journal.flush();
+            } catch (IOException e) {
+                // The reservation is confirmed, it is only not remembered across restarts
+                LOGGER.error("Could not write the idempotency journal", e);
+            }
+        }
+    }
+
+    private void load(Path journalFile) throws IOException {
+        long nowMillis = System.currentTimeMillis();
+        // A key may appear again after it expired or its reservation failed, the last line wins
+        Map<String, String> liveLines = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(journalFile, StandardCharsets.UTF_8)) {
+            String[] fields = line.split(String.valueOf(SEPARATOR));
+            // Skips the last line if it was cut short by a crash
+            if (fields.length != 4 || !isNumber(fields[2]) || !isNumber(fields[3])
+                    || Long.parseLong(fields[3]) < nowMillis) {
+                continue;
+            }
+            liveLines.remove(fields[0]);
+            liveLines.put(fields[0], line);
+        }
+
+        // Keeps the most recent keys that fit in the store
+        List<String> lines = new ArrayList<>(liveLines.values());
+        lines = lines.subList(Math.max(0, lines.size() - maxEntries), lines.size());
+        for (String line : lines) {
+            String[] fields = line.split(String.valueOf(SEPARATOR));
+            Entry entry = new Entry(fields[0],
+                    URLDecoder.decode(fields[1], StandardCharsets.UTF_8),
+                    Long.parseLong(fields[3]));
+            entry.confirmationNumber.complete(Long.parseLong(fields[2]));
+            entries.put(fields[0], entry);
+            insertionOrder.addLast(entry);
+        }
+
+        Path compactedFile = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+        Files.write(compactedFile, lines, StandardCharsets.UTF_8);
+        Files.move(compactedFile, journalFile, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static boolean isNumber(String field) {
+        if (field.isEmpty() || field.length() > 18) {
+            return false;
+        }
+        for (int i = 0; i < field.length(); i++) {
+            if (!Character.isDigit(field.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Result of a reservation sent with an idempotency key
+     */
+    public static class Outcome {
+        private static final Outcome CONFLICT = new Outcome(-1, false, true);
+
+        private final long confirmationNumber;
+        private final boolean replayed;
+        private final boolean conflict;
+
+        private Outcome(long confirmationNumber, boolean replayed, boolean conflict) {
+            this.confirmationNumber = confirmationNumber;
+            this.replayed = replayed;
+            this.conflict = conflict;
+        }
+
+        public long getConfirmationNumber() {
+            return confirmationNumber;
+        }
+
+        /**
+         * @return - true if the confirmation comes from an earlier attempt with the same key
+         */
+        public boolean isReplayed() {
+            return replayed;
+        }
+
+        /**
+         * @return - true if the key was already used for a different reservation
+         */
+        public boolean isConflict() {
+            return conflict;
+        }
+    }
+
+    private static class Entry {
+        private final String key;
+        private final String fingerprint;
+        private final long expiresAtMillis;
+        private final CompletableFuture<Long> confirmationNumber = new CompletableFuture<>();
+
+        private Entry(String key, String fingerprint, long expiresAtMillis) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
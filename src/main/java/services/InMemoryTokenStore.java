@@ -0,0 +1,159 @@
+package services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the valid tokens in an open addressing hash table which is replaced as a whole on
+ * reload, so lookups never lock and never see a partially loaded set of tokens.
+ * <p>Tokens are hashed with the same function as {@link String#hashCode()} directly over the
+ * characters of the cookie header, so a lookup allocates nothing.
+ */
+public class InMemoryTokenStore implements TokenStore {
+    private static final long NEVER_EXPIRES = Long.MAX_VALUE;
+
+    private volatile TokenTable tokenTable;
+    private volatile long loadedFileLastModified = -1;
+
+    public InMemoryTokenStore(Set<String> tokens) {
+        Map<String, Instant> tokensWithoutExpiry = new HashMap<>();
+        for (String token : tokens) {
+            tokensWithoutExpiry.put(token, null);
+        }
+        this.tokenTable = new TokenTable(tokensWithoutExpiry);
+    }
+
+    /**
+     * Loads the tokens from a file with one token per line, optionally followed by a comma and
+     * its expiry time in ISO-8601 format. Blank lines and lines starting with # are ignored.
+     * <p>Example:
+     * <pre>
+     * abcd
+     * aabbccc,2030-12-31T23:59:59Z
+     * </pre>
+     */
+    public static InMemoryTokenStore fromFile(Path tokensFile) throws IOException {
+        InMemoryTokenStore tokenStore = new InMemoryTokenStore(Set.of());
+        tokenStore.reloadIfModified(tokensFile);
+        return tokenStore;
+    }
+
+    /**
+     * Replaces all the tokens at once
+     *
+     * @param tokens - Map from a token to its expiry time, or to null if it never expires
+     */
+    public void replaceTokens(Map<String, Instant> tokens) {
+        tokenTable = new TokenTable(tokens);
+    }
+
+    /**
+     * Reloads the tokens from the file if it changed since it was last loaded
+     *
+     * @return - true if the tokens were reloaded
+     */
+    public boolean reloadIfModified(Path tokensFile) throws IOException {
+        long lastModified = Files.getLastModifiedTime(tokensFile).toMillis();
+        if (lastModified == loadedFileLastModified) {
+            return false;
+        }
+        replaceTokens(parseTokens(Files.readAllLines(tokensFile)));
+        loadedFileLastModified = lastModified;
+        return true;
+    }
+
+    public int size() {
+        return tokenTable.size;
+    }
+
+    @Override
+    public boolean isValid(CharSequence source, int start, int end) {
+        return tokenTable.isValid(source, start, end, System.currentTimeMillis());
+    }
+
+    private static Map<String, Instant> parseTokens(List<String> lines) {
+        Map<String, Instant> tokens = new HashMap<>();
+        for (String line : lines) {
+            String trimmedLine = line.trim();
+            if (trimmedLine.isEmpty() || trimmedLine.startsWith("#")) {
+                continue;
+            }
+            int comma = trimmedLine.indexOf(',');
+            if (comma < 0) {
+                tokens.put(trimmedLine, null);
+            } else {
+                tokens.put(trimmedLine.substring(0, comma).trim(),
+                        Instant.parse(trimmedLine.substring(comma + 1).trim()));
+            }
+        }
+        return tokens;
+    }
+
+    private static int hash(CharSequence source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        return hash;
+    }
+
+    private static boolean regionEquals(String token, CharSequence source, int start, int end) {
+        if (token.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            if (token.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class TokenTable {
+        private final String[] tokens;
+        private final long[] expiresAtMillis;
+        private final int mask;
+        private final int size;
+
+        private TokenTable(Map<String, Instant> tokensWithExpiry) {
+            // Kept at most half full so probe sequences stay short
+            int capacity = Integer.highestOneBit(Math.max(1, tokensWithExpiry.size()) * 4);
+            this.tokens = new String[capacity];
+            this.expiresAtMillis = new long[capacity];
+            this.mask = capacity - 1;
+            this.size = tokensWithExpiry.size();
+
+            for (Map.Entry<String, Instant> entry : tokensWithExpiry.entrySet()) {
+                int slot = spread(entry.getKey().hashCode()) & mask;
+                while (tokens[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                tokens[slot] = entry.getKey();
+                expiresAtMillis[slot] = entry.getValue() == null
+                        ? NEVER_EXPIRES
+                        : entry.getValue().toEpochMilli();
+            }
+        }
+
+        private boolean isValid(CharSequence source, int start, int end, long nowMillis) {
+            int slot = spread(hash(source, start, end)) & mask;
+            while (tokens[slot] != null) {
+                if (regionEquals(tokens[slot], source, start, end)) {
+                    return nowMillis < expiresAtMillis[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package services;
+
+import inventory.InventorySnapshot;
+import model.Flight;
+import model.SearchFilter;
+import model.SearchResult;
+import model.TicketReservationRequest;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Answers searches from an {@link InventorySnapshot} while its flights are recent enough, and
+ * searches the airlines through another {@link AirlinesService} otherwise.
+ * <p>Unlike {@link CachingAirlinesService}, the most queried routes and dates are searched again
+ * in the background before they go stale, so hot routes are rarely searched live.
+ * Reservations take the reserved seats off the snapshot instead of dropping the route.
+ * Answers missing some airlines are returned but not put in the snapshot.
+ */
+public class InventoryAirlinesService implements AirlinesService {
+    private final AirlinesService airlinesService;
+    private final InventorySnapshot snapshot;
+    private final long maxStalenessNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    /**
+     * @param airlinesService - The service searching the airlines on a miss and on refresh
+     * @param snapshot        - The flights of the routes searched recently
+     * @param maxStaleness    - Oldest flights of the snapshot a search may return
+     */
+    public InventoryAirlinesService(AirlinesService airlinesService, InventorySnapshot snapshot,
+                                    Duration maxStaleness) {
+        this.airlinesService = airlinesService;
+        this.snapshot = snapshot;
+        this.maxStalenessNanos = maxStaleness.toNanos();
+    }
+
+    /**
+     * Reports the flights of the snapshot at once when they are fresh. Otherwise the flights
+     * are reported as the airlines answer and then put in the snapshot, unless the filter is
+     * restricted to some airlines.
+     */
+    @Override
+    public SearchResult searchFlights(String origin, String destination, LocalDate date,
+                                      Optional<String> referer, SearchFilter filter,
+                                      Consumer<Flight> onFlight) {
+        List<Flight> flights = snapshot.getIfFresh(origin, destination, date, maxStalenessNanos);
+        if (flights != null) {
+            hits.increment();
+            for (Flight flight : flights) {
+                if (filter.matches(flight)) {
+                    onFlight.accept(flight);
+                }
+            }
+            return SearchResult.complete(filter.apply(flights));
+        }
+        misses.increment();
+        if (filter.restrictsAirlines()) {
+            return airlinesService.searchFlights(origin, destination, date, referer, filter,
+                    onFlight);
+        }
+        SearchResult result = airlinesService.searchFlights(origin, destination, date, referer,
+                SearchFilter.none(), flight -> {
+                    if (filter.matches(flight)) {
+                        onFlight.accept(flight);
+                    }
+                });
+        putIfComplete(origin, destination, date, result);
+        return new SearchResult(filter.apply(result.getFlights()), result.isComplete());
+    }
+
+    /**
+     * Reports the fresh days of the snapshot first, then searches the span of the other days in
+     * a single range search. The days searched are put in the snapshot, unless the filter is
+     * restricted to some airlines.
+     */
+    @Override
+    public void searchAllFlights(String origin, String destination, LocalDate from,
+                                 LocalDate to, Optional<String> referer, SearchFilter filter,
+                                 BiConsumer<LocalDate, SearchResult> onDayCompleted) {
+        TreeSet<LocalDate> missingDays = new TreeSet<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            List<Flight> flights =
+                    snapshot.getIfFresh(origin, destination, date, maxStalenessNanos);
+            if (flights != null) {
+                hits.increment();
+                onDayCompleted.accept(date, SearchResult.complete(filter.apply(flights)));
+            } else {
+                misses.increment();
+                missingDays.add(date);
+            }
+        }
+        if (missingDays.isEmpty()) {
+            return;
+        }
+
+        if (filter.restrictsAirlines()) {
+            airlinesService.searchAllFlights(origin, destination, missingDays.first(),
+                    missingDays.last(), referer, filter, (date, result) -> {
+                        if (missingDays.contains(date)) {
+                            onDayCompleted.accept(date, result);
+                        }
+                    });
+            return;
+        }
+        airlinesService.searchAllFlights(origin, destination, missingDays.first(),
+                missingDays.last(), referer, SearchFilter.none(), (date, result) -> {
+                    if (!missingDays.contains(date)) {
+                        return;
+                    }
+                    putIfComplete(origin, destination, date, result);
+                    onDayCompleted.accept(date, new SearchResult(filter.apply(result.getFlights()),
+                            result.isComplete()));
+                });
+    }
+
+    @Override
+    public long reserveFlight(TicketReservationRequest request) {
+        long confirmationNumber = airlinesService.reserveFlight(request);
+        if (confirmationNumber > 0) {
+            reserveSeatsOf(request);
+        }
+        return confirmationNumber;
+    }
+
+    @Override
+    public List<Long> reserveFlights(List<TicketReservationRequest> requests) {
+        List<Long> confirmationNumbers = airlinesService.reserveFlights(requests);
+        for (int i = 0; i < requests.size(); i++) {
+            if (confirmationNumbers.get(i) > 0) {
+                reserveSeatsOf(requests.get(i));
+            }
+        }
+        return confirmationNumbers;
+    }
+
+    /**
+     * Searches again the most queried routes and dates whose flights are past half of the
+     * staleness bound, so they are replaced before searches stop using them
+     *
+     * @param maxRoutes - Maximum number of routes and dates to search
+     * @return - the number of routes and dates refreshed
+     */
+    public int refreshHotRoutes(int maxRoutes) {
+        List<InventorySnapshot.RouteDate> routes = snapshot.selectRoutesToRefresh(maxRoutes,
+                maxStalenessNanos / 2, maxStalenessNanos, LocalDate.now());
+        for (InventorySnapshot.RouteDate route : routes) {
+            SearchResult result = airlinesService.searchFlights(route.getOrigin(),
+                    route.getDestination(), route.getDate(), Optional.empty(),
+                    SearchFilter.none(), flight -> { });
+            putIfComplete(route.getOrigin(), route.getDestination(), route.getDate(), result);
+            refreshes.increment();
+        }
+        return routes.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Number of routes and dates searched again in the background
+     */
+    public long getRefreshes() {
+        return refreshes.sum();
+    }
+
+    public int size() {
+        return snapshot.size();
+    }
+
+    /**
+     * Keeps the flights of a route and date only if every airline answered, so a partial
+     * answer does not stand for the route until it goes stale
+     */
+    private void putIfComplete(String origin, String destination, LocalDate date,
+                               SearchResult result) {
+        if (result.isComplete()) {
+            snapshot.put(origin, destination, date, result.getFlights());
+        }
+    }
+
+    private void reserveSeatsOf(TicketReservationRequest request) {
+        snapshot.reserveSeats(request.getAirlineName(), request.getId(),
+                request.getNumberOfTickets());
+    }
+}
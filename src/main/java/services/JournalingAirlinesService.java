@@ -0,0 +1,196 @@
+package services;
+
+import journal.JournalEntry;
+import journal.ReservationJournal;
+import logging.RequestLogger;
+import model.Flight;
+import model.SearchFilter;
+import model.SearchResult;
+import model.TicketReservationRequest;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Records every confirmed reservation in a {@link ReservationJournal}, so the bookings survive a
+ * crash of the server.
+ * <p>A reservation waits for its record to be on disk, up to the sync timeout. The airline has
+ * taken the seats once it confirmed, so the confirmation number is returned even if the record
+ * could not be written in time: the failure is logged and counted, and a failed write is
+ * appended again in the background.
+ */
+public class JournalingAirlinesService implements AirlinesService {
+    private static final RequestLogger LOGGER = RequestLogger.get();
+    private static final int MAX_RETRIES = 10;
+    private static final long FIRST_RETRY_DELAY_MILLIS = 100;
+    private static final long MAX_RETRY_DELAY_MILLIS = 30_000;
+
+    private final AirlinesService airlinesService;
+    private final ReservationJournal reservationJournal;
+    private final long syncTimeoutNanos;
+    private final ScheduledExecutorService retryExecutor =
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "reservation-journal-retry");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private final LongAdder failedWrites = new LongAdder();
+    private final LongAdder retriedWrites = new LongAdder();
+    private final LongAdder lostWrites = new LongAdder();
+
+    public JournalingAirlinesService(AirlinesService airlinesService,
+                                     ReservationJournal reservationJournal) {
+        this(airlinesService, reservationJournal, Duration.ofSeconds(5));
+    }
+
+    /**
+     * @param syncTimeout - Longest time a reservation waits for its record to be on disk
+     */
+    public JournalingAirlinesService(AirlinesService airlinesService,
+                                     ReservationJournal reservationJournal,
+                                     Duration syncTimeout) {
+        this.airlinesService = airlinesService;
+        this.reservationJournal = reservationJournal;
+        this.syncTimeoutNanos = syncTimeout.toNanos();
+    }
+
+    @Override
+    public SearchResult searchFlights(String origin, String destination, LocalDate date,
+                                      Optional<String> referer, SearchFilter filter,
+                                      Consumer<Flight> onFlight) {
+        return airlinesService.searchFlights(origin, destination, date, referer, filter,
+                onFlight);
+    }
+
+    @Override
+    public void searchAllFlights(String origin, String destination, LocalDate from,
+                                 LocalDate to, Optional<String> referer, SearchFilter filter,
+                                 BiConsumer<LocalDate, SearchResult> onDayCompleted) {
+        airlinesService.searchAllFlights(origin, destination, from, to, referer, filter,
+                onDayCompleted);
+    }
+
+    @Override
+    public long reserveFlight(TicketReservationRequest request) {
+        long confirmationNumber = airlinesService.reserveFlight(request);
+        if (confirmationNumber > 0) {
+            JournalEntry entry = entryOf(request, confirmationNumber);
+            awaitDurable(entry, reservationJournal.append(entry), System.nanoTime());
+        }
+        return confirmationNumber;
+    }
+
+    /**
+     * Journals the confirmed reservations of the batch together, so they share a disk sync
+     */
+    @Override
+    public List<Long> reserveFlights(List<TicketReservationRequest> requests) {
+        List<Long> confirmationNumbers = airlinesService.reserveFlights(requests);
+        List<JournalEntry> entries = new ArrayList<>(requests.size());
+        List<CompletableFuture<Void>> writes = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            if (confirmationNumbers.get(i) > 0) {
+                JournalEntry entry = entryOf(requests.get(i), confirmationNumbers.get(i));
+                entries.add(entry);
+                writes.add(reservationJournal.append(entry));
+            }
+        }
+        // Every write shares the same deadline, so the batch waits at most one sync timeout
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < entries.size(); i++) {
+            awaitDurable(entries.get(i), writes.get(i), startNanos);
+        }
+        return confirmationNumbers;
+    }
+
+    /**
+     * Number of confirmed reservations whose record failed or was not on disk in time
+     */
+    public long getFailedWrites() {
+        return failedWrites.sum();
+    }
+
+    /**
+     * Number of records written again in the background after a failure
+     */
+    public long getRetriedWrites() {
+        return retriedWrites.sum();
+    }
+
+    /**
+     * Number of confirmed reservations given up on after every retry failed
+     */
+    public long getLostWrites() {
+        return lostWrites.sum();
+    }
+
+    private static JournalEntry entryOf(TicketReservationRequest request,
+                                        long confirmationNumber) {
+        return new JournalEntry(confirmationNumber, request.getAirlineName(), request.getId(),
+                request.getNumberOfTickets(), System.currentTimeMillis());
+    }
+
+    /**
+     * Waits until the record is on disk or the sync timeout counted from the start time passes.
+     * A record that is not durable by then is retried in the background if its write fails.
+     */
+    private void awaitDurable(JournalEntry entry, CompletableFuture<Void> write,
+                              long startNanos) {
+        String failure = "Confirmed reservation " + entry.getConfirmationNumber() + " ";
+        try {
+            write.get(Math.max(0, startNanos + syncTimeoutNanos - System.nanoTime()),
+                    TimeUnit.NANOSECONDS);
+            return;
+        } catch (TimeoutException e) {
+            LOGGER.warn(failure + "is not on disk yet, the reservation journal did not sync "
+                    + "in time");
+        } catch (ExecutionException e) {
+            LOGGER.error(failure + "could not be written to the reservation journal",
+                    e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn(failure + "is not on disk yet, interrupted while waiting for the "
+                    + "reservation journal");
+        }
+        failedWrites.increment();
+        retryOnFailure(entry, write, 1);
+    }
+
+    /**
+     * Appends the entry again, with a growing delay, each time its write fails
+     */
+    private void retryOnFailure(JournalEntry entry, CompletableFuture<Void> write,
+                                int attempt) {
+        write.whenComplete((ignored, e) -> {
+            if (e == null) {
+                return;
+            }
+            if (attempt > MAX_RETRIES) {
+                lostWrites.increment();
+                LOGGER.error("Gave up journaling confirmed reservation "
+                        + entry.getConfirmationNumber() + " of " + entry.getNumberOfTickets()
+                        + " tickets on flight " + entry.getFlightId() + " of "
+                        + entry.getAirlineName(), e);
+                return;
+            }
+            long delayMillis = Math.min(MAX_RETRY_DELAY_MILLIS,
+                    FIRST_RETRY_DELAY_MILLIS << (attempt - 1));
+            retryExecutor.schedule(() -> {
+                retriedWrites.increment();
+                retryOnFailure(entry, reservationJournal.append(entry), attempt + 1);
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        });
+    }
+}
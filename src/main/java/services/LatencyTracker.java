@@ -0,0 +1,78 @@
+package services;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps the most recent call latencies of an airline and derives percentiles from them.
+ * <p>Percentiles are recomputed every {@link #RECOMPUTE_INTERVAL} samples, so reading them on
+ * the request path is a volatile read.
+ */
+public class LatencyTracker {
+    private static final int WINDOW_SIZE = 512;
+    private static final int RECOMPUTE_INTERVAL = 32;
+    // Fewer samples than this are not enough to trust the percentiles
+    private static final int MIN_SAMPLES = 20;
+    private static final double TIMEOUT_TO_P99_RATIO = 2.0;
+
+    private final AtomicLongArray samples = new AtomicLongArray(WINDOW_SIZE);
+    private final AtomicLong count = new AtomicLong();
+    private volatile long p50Nanos;
+    private volatile long p95Nanos;
+    private volatile long p99Nanos;
+
+    public void record(long latencyNanos) {
+        long index = count.getAndIncrement();
+        samples.set((int) (index % WINDOW_SIZE), latencyNanos);
+        if ((index + 1) % RECOMPUTE_INTERVAL == 0 || index + 1 == MIN_SAMPLES) {
+            recomputePercentiles(Math.min(index + 1, WINDOW_SIZE));
+        }
+    }
+
+    /**
+     * Timeout for the next call: twice the observed p99, kept between the given bounds.
+     * Returns the maximum until enough calls have been observed.
+     */
+    public Duration adaptiveTimeout(Duration minimum, Duration maximum) {
+        if (count.get() < MIN_SAMPLES) {
+            return maximum;
+        }
+        long timeoutNanos = (long) (p99Nanos * TIMEOUT_TO_P99_RATIO);
+        return Duration.ofNanos(Math.max(minimum.toNanos(), Math.min(maximum.toNanos(),
+                timeoutNanos)));
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP95Nanos() {
+        return p95Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    private void recomputePercentiles(long size) {
+        long[] window = new long[(int) size];
+        for (int i = 0; i < window.length; i++) {
+            window[i] = samples.get(i);
+        }
+        Arrays.sort(window);
+        p50Nanos = percentile(window, 0.50);
+        p95Nanos = percentile(window, 0.95);
+        p99Nanos = percentile(window, 0.99);
+    }
+
+    private static long percentile(long[] sortedWindow, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedWindow.length) - 1;
+        return sortedWindow[Math.max(0, index)];
+    }
+}
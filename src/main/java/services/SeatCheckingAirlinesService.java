@@ -0,0 +1,169 @@
+package services;
+
+import metrics.Counter;
+import metrics.MetricsRegistry;
+import model.Flight;
+import model.SearchFilter;
+import model.SearchResult;
+import model.TicketReservationRequest;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Refuses reservations asking for more seats than the flight had left in a recent search,
+ * without calling the airline.
+ * <p>Every search result feeds a {@link SeatLedger}, so the service is meant to sit below the
+ * search caches: it then records only the answers of the airlines, and a cached result does not
+ * record its seats again nor keep them alive. A reservation on a known flight holds its
+ * seats in the ledger while the airline is called, so concurrent reservations cannot together
+ * take more seats than are left. The airline answer then settles the hold: a confirmation takes
+ * the seats off the flight, a refusal makes the ledger forget the flight.
+ */
+public class SeatCheckingAirlinesService implements AirlinesService {
+    private final AirlinesService airlinesService;
+    private final SeatLedger seatLedger;
+    private final Counter savedUpstreamCalls;
+    private final Counter ledgerMismatches;
+
+    /**
+     * @param airlinesService - The service searching the airlines and sending the reservations
+     * @param seatLedger      - Seats left on the flights returned by the searches
+     * @param metricsRegistry - Registry receiving the reservations refused from the ledger
+     */
+    public SeatCheckingAirlinesService(AirlinesService airlinesService, SeatLedger seatLedger,
+                                       MetricsRegistry metricsRegistry) {
+        this.airlinesService = airlinesService;
+        this.seatLedger = seatLedger;
+        this.savedUpstreamCalls = metricsRegistry.counter("seat_ledger_rejections_total",
+                "Reservations refused for lack of seats without calling the airline");
+        this.ledgerMismatches = metricsRegistry.counter("seat_ledger_mismatches_total",
+                "Reservations the ledger allowed but the airline refused");
+        metricsRegistry.gauge("seat_ledger_entries", "Flights whose seats are tracked",
+                seatLedger::size);
+    }
+
+    @Override
+    public SearchResult searchFlights(String origin, String destination, LocalDate date,
+                                      Optional<String> referer, SearchFilter filter,
+                                      Consumer<Flight> onFlight) {
+        SearchResult result = airlinesService.searchFlights(origin, destination, date, referer,
+                filter, onFlight);
+        seatLedger.recordFlights(result.getFlights());
+        return result;
+    }
+
+    @Override
+    public void searchAllFlights(String origin, String destination, LocalDate from,
+                                 LocalDate to, Optional<String> referer, SearchFilter filter,
+                                 BiConsumer<LocalDate, SearchResult> onDayCompleted) {
+        airlinesService.searchAllFlights(origin, destination, from, to, referer, filter,
+                (date, result) -> {
+                    seatLedger.recordFlights(result.getFlights());
+                    onDayCompleted.accept(date, result);
+                });
+    }
+
+    /**
+     * @return - a positive confirmation number upon success, {@link #NOT_ENOUGH_SEATS} if the
+     * flight is known to have fewer seats left than requested, or another negative number if
+     * the airline refused the reservation
+     */
+    @Override
+    public long reserveFlight(TicketReservationRequest request) {
+        SeatLedger.HoldResult holdResult = tryHold(request);
+        if (holdResult == SeatLedger.HoldResult.NOT_ENOUGH_SEATS) {
+            savedUpstreamCalls.increment();
+            return NOT_ENOUGH_SEATS;
+        }
+        long confirmationNumber;
+        try {
+            confirmationNumber = airlinesService.reserveFlight(request);
+        } catch (RuntimeException e) {
+            settle(request, holdResult, -1);
+            throw e;
+        }
+        settle(request, holdResult, confirmationNumber);
+        return confirmationNumber;
+    }
+
+    /**
+     * Sends the airlines only the reservations the ledger allows
+     */
+    @Override
+    public List<Long> reserveFlights(List<TicketReservationRequest> requests) {
+        List<SeatLedger.HoldResult> holdResults = new ArrayList<>(requests.size());
+        List<TicketReservationRequest> allowedRequests = new ArrayList<>(requests.size());
+        for (TicketReservationRequest request : requests) {
+            SeatLedger.HoldResult holdResult = tryHold(request);
+            holdResults.add(holdResult);
+            if (holdResult == SeatLedger.HoldResult.NOT_ENOUGH_SEATS) {
+                savedUpstreamCalls.increment();
+            } else {
+                allowedRequests.add(request);
+            }
+        }
+
+        List<Long> allowedConfirmationNumbers;
+        try {
+            allowedConfirmationNumbers = allowedRequests.isEmpty()
+                    ? List.of()
+                    : airlinesService.reserveFlights(allowedRequests);
+        } catch (RuntimeException e) {
+            for (int i = 0; i < requests.size(); i++) {
+                settle(requests.get(i), holdResults.get(i), -1);
+            }
+            throw e;
+        }
+
+        List<Long> confirmationNumbers = new ArrayList<>(requests.size());
+        int allowedIndex = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            if (holdResults.get(i) == SeatLedger.HoldResult.NOT_ENOUGH_SEATS) {
+                confirmationNumbers.add(NOT_ENOUGH_SEATS);
+                continue;
+            }
+            long confirmationNumber = allowedConfirmationNumbers.get(allowedIndex++);
+            settle(requests.get(i), holdResults.get(i), confirmationNumber);
+            confirmationNumbers.add(confirmationNumber);
+        }
+        return confirmationNumbers;
+    }
+
+    /**
+     * Number of reservations refused from the ledger, each of them an airline call saved
+     */
+    public long getSavedUpstreamCalls() {
+        return savedUpstreamCalls.get();
+    }
+
+    private SeatLedger.HoldResult tryHold(TicketReservationRequest request) {
+        if (request.getNumberOfTickets() <= 0) {
+            return SeatLedger.HoldResult.UNKNOWN;
+        }
+        return seatLedger.tryHold(request.getAirlineName(), request.getId(),
+                request.getNumberOfTickets());
+    }
+
+    /**
+     * Settles the seats held for a reservation with the answer of the airline
+     */
+    private void settle(TicketReservationRequest request, SeatLedger.HoldResult holdResult,
+                        long confirmationNumber) {
+        if (holdResult != SeatLedger.HoldResult.HELD) {
+            return;
+        }
+        if (confirmationNumber > 0) {
+            seatLedger.confirm(request.getAirlineName(), request.getId(),
+                    request.getNumberOfTickets());
+        } else {
+            ledgerMismatches.increment();
+            seatLedger.reject(request.getAirlineName(), request.getId(),
+                    request.getNumberOfTickets());
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package services;
+
+import model.Flight;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Seats left on the flights returned by recent searches, minus the seats held by reservations
+ * still waiting for the airline.
+ * <p>The seats and the holds of a flight share a single {@link AtomicLong}, so checking that
+ * enough seats are left and holding them is one compare-and-set, without any lock.
+ */
+public class SeatLedger {
+    public enum HoldResult {
+        // The seats are held until the reservation is confirmed or released
+        HELD,
+        // The flight is known to have fewer seats left than requested
+        NOT_ENOUGH_SEATS,
+        // The flight was not searched recently, nothing was held
+        UNKNOWN
+    }
+
+    private static final long HOLDS_MASK = 0xFFFFFFFFL;
+
+    private final Map<FlightKey, SeatCount> seatCounts = new ConcurrentHashMap<>();
+    private final long timeToLiveNanos;
+    private final int maxEntries;
+
+    /**
+     * @param timeToLive - How long the seats of a search are trusted
+     * @param maxEntries - Maximum number of flights tracked
+     */
+    public SeatLedger(Duration timeToLive, int maxEntries) {
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Replaces the seats left on each flight with the number the airline just returned. Seats
+     * held by reservations in flight stay held.
+     */
+    public void recordFlights(Iterable<Flight> flights) {
+        long nowNanos = System.nanoTime();
+        for (Flight flight : flights) {
+            FlightKey key = new FlightKey(flight.getAirlineName(), flight.getId());
+            SeatCount seatCount = seatCounts.get(key);
+            if (seatCount == null) {
+                if (seatCounts.size() >= maxEntries) {
+                    removeExpired(nowNanos);
+                    if (seatCounts.size() >= maxEntries) {
+                        continue;
+                    }
+                }
+                seatCount = seatCounts.computeIfAbsent(key, ignored -> new SeatCount(
+                        flight.getNumberOfAvailableSeats(), nowNanos));
+            }
+            seatCount.setSeats(flight.getNumberOfAvailableSeats(), nowNanos);
+        }
+    }
+
+    /**
+     * Holds seats on a flight if enough of them are left
+     */
+    public HoldResult tryHold(String airline, int flightId, int numberOfSeats) {
+        SeatCount seatCount = seatCounts.get(new FlightKey(airline, flightId));
+        if (seatCount == null || seatCount.isExpired(System.nanoTime(), timeToLiveNanos)) {
+            return HoldResult.UNKNOWN;
+        }
+        return seatCount.tryHold(numberOfSeats)
+                ? HoldResult.HELD
+                : HoldResult.NOT_ENOUGH_SEATS;
+    }
+
+    /**
+     * Turns held seats into reserved seats after the airline confirmed the reservation
+     */
+    public void confirm(String airline, int flightId, int numberOfSeats) {
+        SeatCount seatCount = seatCounts.get(new FlightKey(airline, flightId));
+        if (seatCount != null) {
+            seatCount.confirm(numberOfSeats);
+        }
+    }
+
+    /**
+     * Gives held seats back after the airline refused the reservation. The seats of the flight
+     * are forgotten, since the airline did not have as many as the ledger thought, so the next
+     * reservations go to the airline until the flight is searched again.
+     */
+    public void reject(String airline, int flightId, int numberOfSeats) {
+        FlightKey key = new FlightKey(airline, flightId);
+        SeatCount seatCount = seatCounts.get(key);
+        if (seatCount != null) {
+            seatCount.release(numberOfSeats);
+            seatCounts.remove(key, seatCount);
+        }
+    }
+
+    public int size() {
+        return seatCounts.size();
+    }
+
+    private void removeExpired(long nowNanos) {
+        seatCounts.values().removeIf(seatCount ->
+                seatCount.isExpired(nowNanos, timeToLiveNanos) && seatCount.getHolds() == 0);
+    }
+
+    /**
+     * Seats left in the high 32 bits and seats held in the low 32 bits of one atomic long
+     */
+    private static class SeatCount {
+        private final AtomicLong seatsAndHolds;
+        private volatile long updatedAtNanos;
+
+        private SeatCount(int seats, long nowNanos) {
+            this.seatsAndHolds = new AtomicLong((long) Math.max(0, seats) << 32);
+            this.updatedAtNanos = nowNanos;
+        }
+
+        private void setSeats(int seats, long nowNanos) {
+            long current;
+            do {
+                current = seatsAndHolds.get();
+            } while (!seatsAndHolds.compareAndSet(current,
+                    ((long) Math.max(0, seats) << 32) | (current & HOLDS_MASK)));
+            updatedAtNanos = nowNanos;
+        }
+
+        private boolean tryHold(int numberOfSeats) {
+            long current;
+            do {
+                current = seatsAndHolds.get();
+                long seats = current >>> 32;
+                long holds = current & HOLDS_MASK;
+                if (seats - holds < numberOfSeats) {
+                    return false;
+                }
+            } while (!seatsAndHolds.compareAndSet(current, current + numberOfSeats));
+            return true;
+        }
+
+        private void confirm(int numberOfSeats) {
+            long current;
+            long updated;
+            do {
+                current = seatsAndHolds.get();
+                long seats = Math.max(0, (current >>> 32) - numberOfSeats);
+                long holds = Math.max(0, (current & HOLDS_MASK) - numberOfSeats);
+                updated = (seats << 32) | holds;
+            } while (!seatsAndHolds.compareAndSet(current, updated));
+        }
+
+        private void release(int numberOfSeats) {
+            long current;
+            long updated;
+            do {
+                current = seatsAndHolds.get();
+                long holds = Math.max(0, (current & HOLDS_MASK) - numberOfSeats);
+                updated = (current & ~HOLDS_MASK) | holds;
+            } while (!seatsAndHolds.compareAndSet(current, updated));
+        }
+
+        private long getHolds() {
+            return seatsAndHolds.get() & HOLDS_MASK;
+        }
+
+        private boolean isExpired(long nowNanos, long timeToLiveNanos) {
+            return nowNanos - updatedAtNanos > timeToLiveNanos;
+        }
+    }
+
+    private static class FlightKey {
+        private final String airlineName;
+        private final int id;
+
+        private FlightKey(String airlineName, int id) {
+            this.airlineName = airlineName;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof FlightKey)) {
+                return false;
+            }
+            FlightKey other = (FlightKey) o;
+            return id == other.id && Objects.equals(airlineName, other.airlineName);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(airlineName) + id;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package services;
+
+/**
+ * Source of the authentication tokens accepted by {@link AuthenticationService}
+ */
+public interface TokenStore {
+
+    /**
+     * Checks a token without copying it out of the text it appears in
+     *
+     * @param source - Text containing the token, usually a Cookie header
+     * @param start  - Index of the first character of the token
+     * @param end    - Index after the last character of the token
+     * @return - true if the token is known and has not expired
+     */
+    boolean isValid(CharSequence source, int start, int end);
+
+    default boolean isValid(CharSequence token) {
+        return isValid(token, 0, token.length());
+    }
+}
@@ -0,0 +1,85 @@
+package services;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded pool of daemon threads with a bounded queue, handling the answers of all the
+ * airlines in place of the unbounded pool each HTTP client creates by default.
+ * <p>The tasks come from the selector thread of the HTTP clients, which must neither run them
+ * itself nor see them fail, and a dropped task would leave its request waiting forever. So the
+ * queue is kept bounded ahead of the tasks: while it is full, {@link #tryAcceptCall()} refuses
+ * new airline calls, which fail at once instead of adding to the backlog. The few tasks of calls
+ * already in flight which still find the queue full run on the common pool.
+ */
+public class UpstreamExecutor implements Executor {
+    private final ThreadPoolExecutor executor;
+    private final LongAdder refusedCalls = new LongAdder();
+    private final LongAdder overflowedTasks = new LongAdder();
+
+    /**
+     * @param threads       - Number of threads handling the answers
+     * @param queueCapacity - Number of answers that may wait for a free thread
+     */
+    public UpstreamExecutor(int threads, int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable,
+                            "upstream-http-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (task, rejectingExecutor) -> {
+                    overflowedTasks.increment();
+                    ForkJoinPool.commonPool().execute(task);
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Checked before sending a request to an airline
+     *
+     * @return - false if the queue is full, in which case the call must fail without being sent
+     */
+    public boolean tryAcceptCall() {
+        if (executor.getQueue().remainingCapacity() == 0) {
+            refusedCalls.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveThreads() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Number of airline calls refused because the queue was full
+     */
+    public long getRefusedCalls() {
+        return refusedCalls.sum();
+    }
+
+    /**
+     * Number of tasks which found the queue full and ran on the common pool
+     */
+    public long getOverflowedTasks() {
+        return overflowedTasks.sum();
+    }
+}
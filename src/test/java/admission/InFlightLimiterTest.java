@@ -0,0 +1,50 @@
+package admission;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InFlightLimiterTest {
+
+    @Test
+    void refusesRequestsOverTheCapacity() {
+        InFlightLimiter limiter = new InFlightLimiter(2);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    @Test
+    void releaseMakesRoomAgain() {
+        InFlightLimiter limiter = new InFlightLimiter(1);
+        assertTrue(limiter.tryAcquire());
+
+        limiter.release();
+
+        assertEquals(0, limiter.getInFlight());
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void lowerCeilingLeavesTheRestToOtherLanes() {
+        InFlightLimiter limiter = new InFlightLimiter(3);
+
+        assertTrue(limiter.tryAcquire(2));
+        assertTrue(limiter.tryAcquire(2));
+        assertFalse(limiter.tryAcquire(2));
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+    }
+
+    @Test
+    void ceilingIsCappedByTheCapacity() {
+        InFlightLimiter limiter = new InFlightLimiter(1);
+
+        assertTrue(limiter.tryAcquire(5));
+        assertFalse(limiter.tryAcquire(5));
+    }
+}
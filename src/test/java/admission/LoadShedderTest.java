@@ -0,0 +1,89 @@
+package admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoadShedderTest {
+
+    @Test
+    void runsRefusedRequestsOnTheShedderThread() throws InterruptedException {
+        LoadShedder loadShedder = new LoadShedder(1);
+        AtomicBoolean shedding = new AtomicBoolean();
+        CountDownLatch ran = new CountDownLatch(1);
+
+        loadShedder.rejectedExecution(() -> {
+            shedding.set(loadShedder.isShedding());
+            ran.countDown();
+        }, null);
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertTrue(shedding.get());
+        assertFalse(loadShedder.isShedding());
+        assertEquals(1, loadShedder.getShedRequests());
+    }
+
+    @Test
+    void dropsRequestsOnceItsQueueIsFull() throws InterruptedException {
+        LoadShedder loadShedder = new LoadShedder(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        loadShedder.rejectedExecution(() -> {
+            blocked.countDown();
+            awaitQuietly(release);
+        }, null);
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        loadShedder.rejectedExecution(() -> {
+        }, null);
+
+        assertThrows(RejectedExecutionException.class,
+                () -> loadShedder.rejectedExecution(() -> {
+                }, null));
+        release.countDown();
+
+        assertEquals(2, loadShedder.getShedRequests());
+        assertEquals(1, loadShedder.getDroppedConnections());
+    }
+
+    @Test
+    void takesTheRequestsAFullWorkerPoolRejects() throws InterruptedException {
+        LoadShedder loadShedder = new LoadShedder(1);
+        ThreadPoolExecutor workerExecutor = new ThreadPoolExecutor(1, 1, 0,
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1), loadShedder);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch shed = new CountDownLatch(1);
+        try {
+            workerExecutor.execute(() -> awaitQuietly(release));
+            workerExecutor.execute(() -> {
+            });
+            workerExecutor.execute(() -> {
+                if (loadShedder.isShedding()) {
+                    shed.countDown();
+                }
+            });
+
+            assertTrue(shed.await(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            workerExecutor.shutdown();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
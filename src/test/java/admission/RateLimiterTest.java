@@ -0,0 +1,65 @@
+package admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterTest {
+
+    @Test
+    void letsABurstThroughThenAsksToWait() {
+        RateLimiter limiter = new RateLimiter(1, 2, 10);
+
+        assertEquals(0, limiter.tryAcquire("client"));
+        assertEquals(0, limiter.tryAcquire("client"));
+        long waitNanos = limiter.tryAcquire("client");
+
+        assertTrue(waitNanos > 0);
+        assertTrue(waitNanos <= TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    void refillsAtTheGivenRate() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(100, 1, 10);
+        assertEquals(0, limiter.tryAcquire("client"));
+        assertTrue(limiter.tryAcquire("client") > 0);
+
+        Thread.sleep(20);
+
+        assertEquals(0, limiter.tryAcquire("client"));
+    }
+
+    @Test
+    void clientsHaveTheirOwnBucket() {
+        RateLimiter limiter = new RateLimiter(1, 1, 10);
+
+        assertEquals(0, limiter.tryAcquire("client-1"));
+        assertTrue(limiter.tryAcquire("client-1") > 0);
+        assertEquals(0, limiter.tryAcquire("client-2"));
+        assertEquals(2, limiter.size());
+    }
+
+    @Test
+    void newClientsShareOneBucketOnceFull() {
+        RateLimiter limiter = new RateLimiter(1, 1, 1);
+        assertEquals(0, limiter.tryAcquire("client-1"));
+
+        assertEquals(0, limiter.tryAcquire("client-2"));
+        assertTrue(limiter.tryAcquire("client-3") > 0);
+        assertEquals(1, limiter.size());
+    }
+
+    @Test
+    void fullBucketsAreDroppedToMakeRoom() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(100, 1, 1);
+        assertEquals(0, limiter.tryAcquire("client-1"));
+
+        Thread.sleep(20);
+
+        assertEquals(0, limiter.tryAcquire("client-2"));
+        assertEquals(0, limiter.tryAcquire("client-3"));
+    }
+}
@@ -0,0 +1,148 @@
+package inventory;
+
+import model.Flight;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InventorySnapshotTest {
+    private static final LocalDate DATE = LocalDate.of(2030, 12, 1);
+    private static final long FRESH = Long.MAX_VALUE;
+
+    @Test
+    void returnsTheStoredFlightsInOrder() {
+        InventorySnapshot snapshot = new InventorySnapshot(10);
+        snapshot.put("lax", "sfo", DATE, List.of(flight(1, "Delta", 412.37, 5),
+                flight(2, "United", 99.99, 0)));
+
+        List<Flight> flights = snapshot.getIfFresh("lax", "sfo", DATE, FRESH);
+
+        assertEquals(2, flights.size());
+        assertEquals(1, flights.get(0).getId());
+        assertEquals("Delta", flights.get(0).getAirlineName());
+        assertEquals(41237, flights.get(0).getPriceCents());
+        assertEquals(5, flights.get(0).getNumberOfAvailableSeats());
+        assertEquals(DATE, flights.get(0).getDate());
+        assertEquals(2, flights.get(1).getId());
+        assertEquals(9999, flights.get(1).getPriceCents());
+    }
+
+    @Test
+    void missesUnknownAndStaleRoutes() throws InterruptedException {
+        InventorySnapshot snapshot = new InventorySnapshot(10);
+        snapshot.put("lax", "sfo", DATE, List.of(flight(1, "Delta", 100, 5)));
+
+        assertNull(snapshot.getIfFresh("sfo", "lax", DATE, FRESH));
+        assertNull(snapshot.getIfFresh("lax", "sfo", DATE.plusDays(1), FRESH));
+        Thread.sleep(2);
+        assertNull(snapshot.getIfFresh("lax", "sfo", DATE, 1_000_000));
+    }
+
+    @Test
+    void putReplacesTheFlightsOfTheDay() {
+        InventorySnapshot snapshot = new InventorySnapshot(10);
+        snapshot.put("lax", "sfo", DATE, List.of(flight(1, "Delta", 100, 5),
+                flight(2, "Delta", 200, 5), flight(3, "United", 300, 5)));
+
+        snapshot.put("lax", "sfo", DATE, List.of(flight(4, "United", 150, 3)));
+
+        List<Flight> flights = snapshot.getIfFresh("lax", "sfo", DATE, FRESH);
+        assertEquals(1, flights.size());
+        assertEquals(4, flights.get(0).getId());
+        assertEquals(1, snapshot.size());
+    }
+
+    @Test
+    void reserveSeatsTakesSeatsOffTheStoredFlight() {
+        InventorySnapshot snapshot = new InventorySnapshot(10);
+        snapshot.put("lax", "sfo", DATE, List.of(flight(1, "Delta", 100, 5)));
+
+        assertTrue(snapshot.reserveSeats("Delta", 1, 2));
+        assertEquals(3, snapshot.getIfFresh("lax", "sfo", DATE, FRESH).get(0)
+                .getNumberOfAvailableSeats());
+        assertTrue(snapshot.reserveSeats("Delta", 1, 10));
+        assertEquals(0, snapshot.getIfFresh("lax", "sfo", DATE, FRESH).get(0)
+                .getNumberOfAvailableSeats());
+        assertFalse(snapshot.reserveSeats("Delta", 2, 1));
+        assertFalse(snapshot.reserveSeats("United", 1, 1));
+    }
+
+    @Test
+    void storesNothingOnceFull() {
+        InventorySnapshot snapshot = new InventorySnapshot(1);
+        snapshot.put("lax", "sfo", DATE, List.of(flight(1, "Delta", 100, 5)));
+
+        snapshot.put("lax", "jfk", DATE, List.of(flight(2, "Delta", 100, 5)));
+
+        assertEquals(1, snapshot.size());
+        assertNull(snapshot.getIfFresh("lax", "jfk", DATE, FRESH));
+    }
+
+    @Test
+    void refreshesTheMostQueriedRoutesFirst() {
+        InventorySnapshot snapshot = new InventorySnapshot(10);
+        snapshot.put("lax", "sfo", DATE, List.of(flight(1, "Delta", 100, 5)));
+        snapshot.put("lax", "jfk", DATE, List.of(flight(2, "Delta", 100, 5)));
+        snapshot.put("sfo", "jfk", DATE, List.of(flight(3, "Delta", 100, 5)));
+        for (int i = 0; i < 3; i++) {
+            snapshot.getIfFresh("lax", "jfk", DATE, FRESH);
+        }
+        snapshot.getIfFresh("sfo", "jfk", DATE, FRESH);
+
+        List<InventorySnapshot.RouteDate> routes = snapshot.selectRoutesToRefresh(2, -1,
+                FRESH, DATE);
+
+        assertEquals(2, routes.size());
+        assertEquals("jfk", routes.get(0).getDestination());
+        assertEquals("lax", routes.get(0).getOrigin());
+        assertEquals("sfo", routes.get(1).getOrigin());
+        assertEquals(DATE, routes.get(1).getDate());
+    }
+
+    @Test
+    void removesRoutesInThePast() {
+        InventorySnapshot snapshot = new InventorySnapshot(10);
+        snapshot.put("lax", "sfo", DATE, List.of(flight(1, "Delta", 100, 5)));
+
+        assertTrue(snapshot.selectRoutesToRefresh(10, -1, FRESH, DATE.plusDays(1)).isEmpty());
+        assertEquals(0, snapshot.size());
+    }
+
+    @Test
+    void reusesTheIdsOfAirportsWhoseDaysWereRemoved() {
+        InventorySnapshot snapshot = new InventorySnapshot(1);
+        // More airports than the 19 bits of airport id can number at once
+        for (int i = 0; i < 1 << 19; i++) {
+            snapshot.put("a" + i, "b" + i, DATE, List.of(flight(1, "Delta", 100, 5)));
+            snapshot.selectRoutesToRefresh(1, -1, FRESH, DATE.plusDays(1));
+        }
+
+        snapshot.put("lax", "sfo", DATE, List.of(flight(1, "Delta", 100, 5)));
+
+        assertEquals(1, snapshot.getIfFresh("lax", "sfo", DATE, FRESH).size());
+    }
+
+    @Test
+    void routesRefusedWhileFullKeepNoAirportId() {
+        InventorySnapshot snapshot = new InventorySnapshot(1);
+        snapshot.put("lax", "sfo", DATE, List.of(flight(1, "Delta", 100, 5)));
+        for (int i = 0; i < 1 << 19; i++) {
+            snapshot.put("a" + i, "b" + i, DATE, List.of(flight(2, "Delta", 100, 5)));
+        }
+        snapshot.selectRoutesToRefresh(1, -1, FRESH, DATE.plusDays(1));
+
+        snapshot.put("lax", "jfk", DATE, List.of(flight(3, "Delta", 100, 5)));
+
+        assertEquals(1, snapshot.getIfFresh("lax", "jfk", DATE, FRESH).size());
+    }
+
+    private static Flight flight(int id, String airline, double priceUSD, int seats) {
+        return new Flight(id, airline, priceUSD, 1, seats, DATE);
+    }
+}
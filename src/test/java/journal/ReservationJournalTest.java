@@ -0,0 +1,150 @@
+package journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReservationJournalTest {
+    private static final long SEGMENT_BYTES = 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void findsTheEntriesAgainAfterReopening() throws Exception {
+        try (ReservationJournal journal = ReservationJournal.open(directory, SEGMENT_BYTES)) {
+            append(journal, entry(1));
+            append(journal, entry(2));
+        }
+
+        try (ReservationJournal journal = ReservationJournal.open(directory, SEGMENT_BYTES)) {
+            assertEquals(2, journal.size());
+            JournalEntry entry = journal.find(2).orElseThrow();
+            assertEquals("Delta", entry.getAirlineName());
+            assertEquals(102, entry.getFlightId());
+            assertEquals(3, entry.getNumberOfTickets());
+            assertFalse(journal.find(3).isPresent());
+        }
+    }
+
+    @Test
+    void truncatesATornRecordOnReplay() throws Exception {
+        try (ReservationJournal journal = ReservationJournal.open(directory, SEGMENT_BYTES)) {
+            append(journal, entry(1));
+            append(journal, entry(2));
+        }
+        Path segment = onlySegment();
+        long validBytes = Files.size(segment);
+        // A crash in the middle of a write leaves the header and part of the next record
+        ByteBuffer tornRecord = ByteBuffer.allocate(12).putInt(64).putInt(0x12345678).putInt(42);
+        tornRecord.flip();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.APPEND)) {
+            channel.write(tornRecord);
+        }
+
+        try (ReservationJournal journal = ReservationJournal.open(directory, SEGMENT_BYTES)) {
+            assertEquals(2, journal.size());
+            assertEquals(validBytes, Files.size(segment));
+            append(journal, entry(3));
+            assertTrue(journal.find(3).isPresent());
+        }
+        try (ReservationJournal journal = ReservationJournal.open(directory, SEGMENT_BYTES)) {
+            assertEquals(3, journal.size());
+        }
+    }
+
+    @Test
+    void dropsTheRecordsFromABadChecksumOnReplay() throws Exception {
+        try (ReservationJournal journal = ReservationJournal.open(directory, SEGMENT_BYTES)) {
+            append(journal, entry(1));
+            append(journal, entry(2));
+        }
+        Path segment = onlySegment();
+        corruptLastByte(segment);
+
+        try (ReservationJournal journal = ReservationJournal.open(directory, SEGMENT_BYTES)) {
+            assertEquals(1, journal.size());
+            assertTrue(journal.find(1).isPresent());
+            assertFalse(journal.find(2).isPresent());
+        }
+    }
+
+    @Test
+    void findFailsOnARecordCorruptedSinceItWasWritten() throws Exception {
+        try (ReservationJournal journal = ReservationJournal.open(directory, SEGMENT_BYTES)) {
+            append(journal, entry(1));
+            corruptLastByte(onlySegment());
+
+            assertThrows(IOException.class, () -> journal.find(1));
+        }
+    }
+
+    @Test
+    void startsANewSegmentOnceTheCurrentOneIsFull() throws Exception {
+        try (ReservationJournal journal = ReservationJournal.open(directory, 40)) {
+            append(journal, entry(1));
+            append(journal, entry(2));
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(2, files.count());
+        }
+        try (ReservationJournal journal = ReservationJournal.open(directory, 40)) {
+            assertEquals(2, journal.size());
+            assertTrue(journal.find(1).isPresent());
+            assertTrue(journal.find(2).isPresent());
+        }
+    }
+
+    @Test
+    void appendAfterCloseFails() throws Exception {
+        ReservationJournal journal = ReservationJournal.open(directory, SEGMENT_BYTES);
+        journal.close();
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> journal.append(entry(1)).get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IOException);
+    }
+
+    private static JournalEntry entry(long confirmationNumber) {
+        return new JournalEntry(confirmationNumber, "Delta", 100 + (int) confirmationNumber, 3,
+                1_000L * confirmationNumber);
+    }
+
+    private static void append(ReservationJournal journal, JournalEntry entry)
+            throws Exception {
+        journal.append(entry).get(5, TimeUnit.SECONDS);
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.findFirst().orElseThrow();
+        }
+    }
+
+    private static void corruptLastByte(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long position = channel.size() - 1;
+            ByteBuffer lastByte = ByteBuffer.allocate(1);
+            channel.read(lastByte, position);
+            lastByte.flip();
+            lastByte.put(0, (byte) ~lastByte.get(0));
+            channel.write(lastByte, position);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogRingBufferTest {
+
+    @Test
+    void emptyBufferHasNoEvent() {
+        assertNull(new LogRingBuffer(4).peek());
+    }
+
+    @Test
+    void handsEventsBackInOrder() {
+        LogRingBuffer buffer = new LogRingBuffer(4);
+        assertTrue(offer(buffer, "first"));
+        assertTrue(offer(buffer, "second"));
+
+        assertEquals("first", take(buffer));
+        assertEquals("second", take(buffer));
+        assertNull(buffer.peek());
+    }
+
+    @Test
+    void refusesEventsOnceFull() {
+        // Rounded up to 4 slots
+        LogRingBuffer buffer = new LogRingBuffer(3);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(offer(buffer, "event " + i));
+        }
+
+        assertFalse(offer(buffer, "event 4"));
+        assertEquals("event 0", take(buffer));
+        assertTrue(offer(buffer, "event 4"));
+    }
+
+    @Test
+    void releaseDropsTheReferencesOfTheEvent() {
+        LogRingBuffer buffer = new LogRingBuffer(2);
+        buffer.offer(1, Level.ERROR, "failed", "/search", "Delta", 5, 500,
+                new IllegalStateException());
+        LogEvent event = buffer.peek();
+
+        buffer.release(event);
+
+        assertNull(event.message);
+        assertNull(event.airline);
+        assertNull(event.throwable);
+    }
+
+    @Test
+    void everyEventOfConcurrentProducersIsDeliveredOnce() throws InterruptedException {
+        int producers = 4;
+        int eventsPerProducer = 10_000;
+        LogRingBuffer buffer = new LogRingBuffer(64);
+        CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            String prefix = p + ":";
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < eventsPerProducer; i++) {
+                    while (!offer(buffer, prefix + i)) {
+                        Thread.yield();
+                    }
+                }
+                done.countDown();
+            });
+            producer.setDaemon(true);
+            producer.start();
+        }
+
+        Set<String> messages = new HashSet<>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (messages.size() < producers * eventsPerProducer && System.nanoTime() < deadline) {
+            LogEvent event = buffer.peek();
+            if (event == null) {
+                Thread.yield();
+                continue;
+            }
+            assertTrue(messages.add(event.message), "delivered twice: " + event.message);
+            buffer.release(event);
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(producers * eventsPerProducer, messages.size());
+        assertNull(buffer.peek());
+    }
+
+    private static boolean offer(LogRingBuffer buffer, String message) {
+        return buffer.offer(0, Level.INFO, message, null, null, LogEvent.NO_LATENCY,
+                LogEvent.NO_STATUS, null);
+    }
+
+    private static String take(LogRingBuffer buffer) {
+        LogEvent event = buffer.peek();
+        String message = event.message;
+        buffer.release(event);
+        return message;
+    }
+}
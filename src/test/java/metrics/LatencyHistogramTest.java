@@ -0,0 +1,95 @@
+package metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void smallValuesHaveTheirOwnBucket() {
+        for (long micros = 0; micros < 16; micros++) {
+            assertEquals(micros, maxOf(micros));
+        }
+    }
+
+    @Test
+    void bucketsDoubleInWidthWithEachPowerOfTwo() {
+        assertEquals(17, maxOf(16));
+        assertEquals(17, maxOf(17));
+        assertEquals(19, maxOf(18));
+        assertEquals(31, maxOf(30));
+        assertEquals(35, maxOf(32));
+        assertEquals(1023, maxOf(960));
+        assertEquals(1023, maxOf(1023));
+        assertEquals(1151, maxOf(1024));
+    }
+
+    @Test
+    void bucketBoundIsWithinAnEighthOfTheValue() {
+        for (long micros = 16; micros < (1L << 40); micros = micros * 3 / 2 + 1) {
+            long bound = maxOf(micros);
+            assertTrue(bound >= micros, micros + " above its bucket " + bound);
+            assertTrue(bound - micros < micros / 8.0, micros + " too far from " + bound);
+        }
+    }
+
+    @Test
+    void countAtMostIncludesOnlyWholeBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordMicros(16);
+        histogram.recordMicros(17);
+        histogram.recordMicros(18);
+
+        assertEquals(0, histogram.countAtMost(16));
+        assertEquals(2, histogram.countAtMost(17));
+        assertEquals(2, histogram.countAtMost(18));
+        assertEquals(3, histogram.countAtMost(19));
+    }
+
+    @Test
+    void percentileIsTheBoundOfItsBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.recordMicros(i);
+        }
+
+        assertEquals(25, histogram.percentileMicros(0.25));
+        assertEquals(51, histogram.percentileMicros(0.5));
+        assertEquals(103, histogram.percentileMicros(0.99));
+        assertEquals(103, histogram.percentileMicros(1));
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050, histogram.getSumMicros());
+    }
+
+    @Test
+    void clampsValuesOutsideTheRange() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordMicros(-5);
+        histogram.recordMicros(Long.MAX_VALUE);
+
+        assertEquals(1, histogram.countAtMost(0));
+        assertEquals((1L << 41) - 1, histogram.percentileMicros(1));
+        assertEquals((1L << 41) - 1, histogram.getSumMicros());
+    }
+
+    @Test
+    void nothingRecordedHasNoPercentile() {
+        assertEquals(0, new LatencyHistogram().percentileMicros(0.99));
+    }
+
+    @Test
+    void recordsNanosAsMicros() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(1_999);
+
+        assertEquals(1, histogram.percentileMicros(1));
+    }
+
+    private static long maxOf(long micros) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordMicros(micros);
+        return histogram.percentileMicros(1);
+    }
+}
@@ -0,0 +1,134 @@
+package services;
+
+import model.Flight;
+import model.SearchFilter;
+import model.SearchResult;
+import model.TicketReservationRequest;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachingAirlinesServiceTest {
+    private static final LocalDate DATE = LocalDate.of(2030, 12, 1);
+    private static final TicketReservationRequest RESERVATION =
+            new TicketReservationRequest(1, "Delta", 2);
+
+    private final StubAirlinesService airlines = new StubAirlinesService();
+    private final CachingAirlinesService service =
+            new CachingAirlinesService(airlines, Duration.ofMinutes(1), 10);
+
+    @Test
+    void answersRepeatedSearchesFromTheCache() {
+        search();
+        search();
+
+        assertEquals(1, airlines.searches.get());
+        assertEquals(1, service.getHits());
+    }
+
+    @Test
+    void reservationDropsTheCachedSearchOfTheFlight() {
+        search();
+
+        service.reserveFlight(RESERVATION);
+        search();
+
+        assertEquals(2, airlines.searches.get());
+        assertEquals(1, service.getInvalidations());
+    }
+
+    @Test
+    void doesNotCacheASearchWhoseRouteWasInvalidatedWhileInFlight() throws Exception {
+        CompletableFuture<List<Flight>> search = searchWhileBlocked(
+                () -> service.invalidate("lax", "sfo", DATE));
+
+        assertEquals(1, search.get(5, TimeUnit.SECONDS).size());
+        search();
+        assertEquals(2, airlines.searches.get());
+        assertEquals(1, service.getStaleResults());
+    }
+
+    @Test
+    void doesNotCacheASearchWhoseFlightWasReservedWhileInFlight() throws Exception {
+        CompletableFuture<List<Flight>> search = searchWhileBlocked(
+                () -> service.reserveFlight(RESERVATION));
+
+        assertEquals(1, search.get(5, TimeUnit.SECONDS).size());
+        search();
+        assertEquals(2, airlines.searches.get());
+        assertEquals(1, service.getStaleResults());
+    }
+
+    @Test
+    void cachesASearchStartedAfterTheInvalidation() {
+        service.invalidate("lax", "sfo", DATE);
+
+        search();
+        search();
+
+        assertEquals(1, airlines.searches.get());
+        assertEquals(0, service.getStaleResults());
+    }
+
+    private List<Flight> search() {
+        return FlightSearches.findAllFlight(service, "lax", "sfo", DATE);
+    }
+
+    /**
+     * Runs a search which waits for the airlines until the action ran
+     */
+    private CompletableFuture<List<Flight>> searchWhileBlocked(Runnable action)
+            throws InterruptedException {
+        airlines.blocked = new CountDownLatch(1);
+        CompletableFuture<List<Flight>> search = CompletableFuture.supplyAsync(this::search);
+        assertTrue(airlines.searchStarted.await(5, TimeUnit.SECONDS));
+        action.run();
+        airlines.blocked.countDown();
+        airlines.blocked = null;
+        return search;
+    }
+
+    /**
+     * Answers every search with a single Delta flight, and confirms every reservation
+     */
+    private static class StubAirlinesService implements AirlinesService {
+        private final AtomicInteger searches = new AtomicInteger();
+        private final CountDownLatch searchStarted = new CountDownLatch(1);
+        private volatile CountDownLatch blocked;
+
+        @Override
+        public SearchResult searchFlights(String origin, String destination, LocalDate date,
+                                          Optional<String> referer, SearchFilter filter,
+                                          Consumer<Flight> onFlight) {
+            searches.incrementAndGet();
+            CountDownLatch latch = blocked;
+            if (latch != null) {
+                searchStarted.countDown();
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            Flight flight = new Flight(1, "Delta", 100, 1, 5, date);
+            onFlight.accept(flight);
+            return SearchResult.complete(List.of(flight));
+        }
+
+        @Override
+        public long reserveFlight(TicketReservationRequest request) {
+            return 1000 + request.getId();
+        }
+    }
+}
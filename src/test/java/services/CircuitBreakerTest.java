@@ -0,0 +1,136 @@
+package services;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+    private static final Duration SLOW_CALL = Duration.ofSeconds(1);
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(3, SLOW_CALL, Duration.ofMinutes(1));
+
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+        assertEquals(1, breaker.getRejectedCalls());
+    }
+
+    @Test
+    void successResetsTheConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(2, SLOW_CALL, Duration.ofMinutes(1));
+
+        breaker.onFailure();
+        breaker.onSuccess(0);
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(1, breaker.getConsecutiveFailures());
+    }
+
+    @Test
+    void slowCallCountsAsFailure() {
+        CircuitBreaker breaker = new CircuitBreaker(1, SLOW_CALL, Duration.ofMinutes(1));
+
+        breaker.onSuccess(SLOW_CALL.toNanos() + 1);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void letsASingleProbeThroughOnceTheOpenDurationElapsed() {
+        CircuitBreaker breaker = openBreaker();
+
+        assertTrue(breaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void successfulProbeClosesTheBreaker() {
+        CircuitBreaker breaker = openBreaker();
+        assertTrue(breaker.tryAcquirePermission());
+
+        breaker.onSuccess(0);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void failedProbeOpensTheBreakerAgain() {
+        CircuitBreaker breaker = openBreaker();
+        assertTrue(breaker.tryAcquirePermission());
+
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    /**
+     * A hedge which got the probe and was cancelled because the primary request answered
+     * first must not leave the breaker half open, rejecting every call for good
+     */
+    @Test
+    void releasedProbeLetsTheNextCallProbe() {
+        CircuitBreaker breaker = openBreaker();
+        assertTrue(breaker.tryAcquirePermission());
+
+        breaker.releasePermission();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    void releasingAPermissionOfAClosedBreakerChangesNothing() {
+        CircuitBreaker breaker = new CircuitBreaker(1, SLOW_CALL, Duration.ofMinutes(1));
+        assertTrue(breaker.tryAcquirePermission());
+
+        breaker.releasePermission();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void releasedProbeDoesNotRestartTheOpenDuration() {
+        CircuitBreaker breaker = new CircuitBreaker(1, SLOW_CALL, Duration.ofMillis(50));
+        breaker.onFailure();
+        assertFalse(breaker.tryAcquirePermission());
+        sleep(Duration.ofMillis(60));
+        assertTrue(breaker.tryAcquirePermission());
+
+        breaker.releasePermission();
+
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    /**
+     * @return - a breaker which opened on a failure and lets its probe through right away
+     */
+    private static CircuitBreaker openBreaker() {
+        CircuitBreaker breaker = new CircuitBreaker(1, SLOW_CALL, Duration.ZERO);
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        return breaker;
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError(e);
+        }
+    }
+}
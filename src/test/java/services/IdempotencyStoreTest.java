@@ -0,0 +1,130 @@
+package services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyStoreTest {
+    private static final String OWNER = "token-1";
+    private static final String KEY = "key-1";
+    private static final String FINGERPRINT = "Delta/7/2";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysTheConfirmationOfTheFirstAttempt() {
+        IdempotencyStore store = new IdempotencyStore(Duration.ofMinutes(1), 10);
+        AtomicInteger calls = new AtomicInteger();
+
+        IdempotencyStore.Outcome first = store.reserve(OWNER, KEY, FINGERPRINT,
+                () -> 1000 + calls.incrementAndGet());
+        IdempotencyStore.Outcome retry = store.reserve(OWNER, KEY, FINGERPRINT,
+                () -> 1000 + calls.incrementAndGet());
+
+        assertEquals(1001, first.getConfirmationNumber());
+        assertFalse(first.isReplayed());
+        assertEquals(1001, retry.getConfirmationNumber());
+        assertTrue(retry.isReplayed());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void refusesAKeyReusedForAnotherReservation() {
+        IdempotencyStore store = new IdempotencyStore(Duration.ofMinutes(1), 10);
+        store.reserve(OWNER, KEY, FINGERPRINT, () -> 1001);
+
+        IdempotencyStore.Outcome outcome = store.reserve(OWNER, KEY, "Delta/8/2", () -> 1002);
+
+        assertTrue(outcome.isConflict());
+    }
+
+    @Test
+    void scopesKeysToTheirOwner() {
+        IdempotencyStore store = new IdempotencyStore(Duration.ofMinutes(1), 10);
+        store.reserve(OWNER, KEY, FINGERPRINT, () -> 1001);
+
+        IdempotencyStore.Outcome outcome = store.reserve("token-2", KEY, "Delta/8/2",
+                () -> 1002);
+
+        assertFalse(outcome.isConflict());
+        assertFalse(outcome.isReplayed());
+        assertEquals(1002, outcome.getConfirmationNumber());
+    }
+
+    @Test
+    void runsTheReservationAgainOnceTheKeyExpired() throws InterruptedException {
+        IdempotencyStore store = new IdempotencyStore(Duration.ofMillis(1), 10);
+        store.reserve(OWNER, KEY, FINGERPRINT, () -> 1001);
+
+        Thread.sleep(5);
+        IdempotencyStore.Outcome outcome = store.reserve(OWNER, KEY, FINGERPRINT, () -> 1002);
+
+        assertFalse(outcome.isReplayed());
+        assertEquals(1002, outcome.getConfirmationNumber());
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void forgetsFailedReservations() {
+        IdempotencyStore store = new IdempotencyStore(Duration.ofMinutes(1), 10);
+        store.reserve(OWNER, KEY, FINGERPRINT, () -> -1);
+        assertThrows(IllegalStateException.class, () -> store.reserve(OWNER, KEY, FINGERPRINT,
+                () -> {
+                    throw new IllegalStateException("airline unreachable");
+                }));
+
+        IdempotencyStore.Outcome outcome = store.reserve(OWNER, KEY, FINGERPRINT, () -> 1001);
+
+        assertFalse(outcome.isReplayed());
+        assertEquals(1001, outcome.getConfirmationNumber());
+    }
+
+    @Test
+    void dropsTheOldestKeysOnceFull() {
+        IdempotencyStore store = new IdempotencyStore(Duration.ofMinutes(1), 2);
+        store.reserve(OWNER, "key-1", FINGERPRINT, () -> 1001);
+        store.reserve(OWNER, "key-2", FINGERPRINT, () -> 1002);
+        store.reserve(OWNER, "key-3", FINGERPRINT, () -> 1003);
+
+        assertEquals(2, store.size());
+        assertFalse(store.reserve(OWNER, "key-1", FINGERPRINT, () -> 1004).isReplayed());
+        assertTrue(store.reserve(OWNER, "key-3", FINGERPRINT, () -> 1005).isReplayed());
+    }
+
+    @Test
+    void reloadsConfirmationsFromItsJournal() throws Exception {
+        Path journalFile = directory.resolve("idempotency.journal");
+        IdempotencyStore store = IdempotencyStore.withJournal(Duration.ofMinutes(1), 10,
+                journalFile);
+        store.reserve(OWNER, KEY, FINGERPRINT, () -> 1001);
+        store.reserve(OWNER, "key-2", FINGERPRINT, () -> -1);
+
+        IdempotencyStore reloadedStore = IdempotencyStore.withJournal(Duration.ofMinutes(1), 10,
+                journalFile);
+
+        assertEquals(1, reloadedStore.size());
+        IdempotencyStore.Outcome outcome = reloadedStore.reserve(OWNER, KEY, FINGERPRINT,
+                () -> 1002);
+        assertTrue(outcome.isReplayed());
+        assertEquals(1001, outcome.getConfirmationNumber());
+        assertFalse(Files.readString(journalFile).contains(OWNER));
+    }
+
+    @Test
+    void validKeysAreVisibleAscii() {
+        assertTrue(IdempotencyStore.isValidKey("0f8fad5b-d9cb-469f-a165-70867728950e"));
+        assertFalse(IdempotencyStore.isValidKey(""));
+        assertFalse(IdempotencyStore.isValidKey("two words"));
+        assertFalse(IdempotencyStore.isValidKey("x".repeat(256)));
+    }
+}
@@ -0,0 +1,112 @@
+package services;
+
+import journal.ReservationJournal;
+import model.Flight;
+import model.SearchFilter;
+import model.SearchResult;
+import model.TicketReservationRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalingAirlinesServiceTest {
+    private static final TicketReservationRequest CONFIRMED =
+            new TicketReservationRequest(7, "Delta", 2);
+    private static final TicketReservationRequest REFUSED =
+            new TicketReservationRequest(8, "Delta", 200);
+
+    @TempDir
+    Path directory;
+
+    private ReservationJournal journal;
+    private JournalingAirlinesService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        journal = ReservationJournal.open(directory, 1024 * 1024);
+        service = new JournalingAirlinesService(new StubAirlinesService(), journal);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        journal.close();
+    }
+
+    @Test
+    void journalsConfirmedReservations() throws IOException {
+        assertEquals(1007, service.reserveFlight(CONFIRMED));
+
+        assertEquals(7, journal.find(1007).orElseThrow().getFlightId());
+        assertEquals(0, service.getFailedWrites());
+    }
+
+    @Test
+    void doesNotJournalRefusedReservations() {
+        assertEquals(AirlinesService.NOT_ENOUGH_SEATS, service.reserveFlight(REFUSED));
+
+        assertEquals(0, journal.size());
+    }
+
+    @Test
+    void keepsTheConfirmationWhenTheJournalCannotWriteIt() throws Exception {
+        journal.close();
+
+        assertEquals(1007, service.reserveFlight(CONFIRMED));
+        assertEquals(1, service.getFailedWrites());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (service.getRetriedWrites() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(service.getRetriedWrites() > 0);
+    }
+
+    @Test
+    void keepsTheConfirmationsOfABatchTheJournalCannotWrite() throws IOException {
+        journal.close();
+
+        List<Long> confirmationNumbers = service.reserveFlights(List.of(CONFIRMED, REFUSED));
+
+        assertEquals(List.of(1007L, AirlinesService.NOT_ENOUGH_SEATS), confirmationNumbers);
+        assertEquals(1, service.getFailedWrites());
+    }
+
+    @Test
+    void journalsTheConfirmedReservationsOfABatch() throws IOException {
+        List<Long> confirmationNumbers = service.reserveFlights(List.of(REFUSED, CONFIRMED));
+
+        assertEquals(List.of(AirlinesService.NOT_ENOUGH_SEATS, 1007L), confirmationNumbers);
+        assertEquals(1, journal.size());
+        assertTrue(journal.find(1007).isPresent());
+    }
+
+    /**
+     * Confirms reservations of at most 10 tickets with 1000 plus the flight id
+     */
+    private static class StubAirlinesService implements AirlinesService {
+        @Override
+        public SearchResult searchFlights(String origin, String destination, LocalDate date,
+                                          Optional<String> referer, SearchFilter filter,
+                                          Consumer<Flight> onFlight) {
+            return SearchResult.complete(List.of());
+        }
+
+        @Override
+        public long reserveFlight(TicketReservationRequest request) {
+            return request.getNumberOfTickets() <= 10
+                    ? 1000 + request.getId()
+                    : NOT_ENOUGH_SEATS;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package services;
+
+import model.Flight;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SeatLedgerTest {
+    private static final String AIRLINE = "Delta";
+    private static final int FLIGHT_ID = 7;
+
+    @Test
+    void unknownFlightHoldsNothing() {
+        SeatLedger ledger = new SeatLedger(Duration.ofMinutes(1), 10);
+
+        assertEquals(SeatLedger.HoldResult.UNKNOWN, ledger.tryHold(AIRLINE, FLIGHT_ID, 1));
+    }
+
+    @Test
+    void holdsSeatsUntilNoneAreLeft() {
+        SeatLedger ledger = ledgerWithSeats(3);
+
+        assertEquals(SeatLedger.HoldResult.HELD, ledger.tryHold(AIRLINE, FLIGHT_ID, 2));
+        assertEquals(SeatLedger.HoldResult.NOT_ENOUGH_SEATS,
+                ledger.tryHold(AIRLINE, FLIGHT_ID, 2));
+        assertEquals(SeatLedger.HoldResult.HELD, ledger.tryHold(AIRLINE, FLIGHT_ID, 1));
+    }
+
+    @Test
+    void confirmTakesTheHeldSeatsOffTheFlight() {
+        SeatLedger ledger = ledgerWithSeats(3);
+
+        assertEquals(SeatLedger.HoldResult.HELD, ledger.tryHold(AIRLINE, FLIGHT_ID, 2));
+        ledger.confirm(AIRLINE, FLIGHT_ID, 2);
+
+        assertEquals(SeatLedger.HoldResult.HELD, ledger.tryHold(AIRLINE, FLIGHT_ID, 1));
+        assertEquals(SeatLedger.HoldResult.NOT_ENOUGH_SEATS,
+                ledger.tryHold(AIRLINE, FLIGHT_ID, 1));
+    }
+
+    @Test
+    void rejectForgetsTheFlight() {
+        SeatLedger ledger = ledgerWithSeats(3);
+
+        assertEquals(SeatLedger.HoldResult.HELD, ledger.tryHold(AIRLINE, FLIGHT_ID, 2));
+        ledger.reject(AIRLINE, FLIGHT_ID, 2);
+
+        assertEquals(0, ledger.size());
+        assertEquals(SeatLedger.HoldResult.UNKNOWN, ledger.tryHold(AIRLINE, FLIGHT_ID, 1));
+    }
+
+    @Test
+    void newSearchKeepsTheSeatsStillHeld() {
+        SeatLedger ledger = ledgerWithSeats(3);
+
+        assertEquals(SeatLedger.HoldResult.HELD, ledger.tryHold(AIRLINE, FLIGHT_ID, 2));
+        ledger.recordFlights(List.of(flightWithSeats(4)));
+
+        assertEquals(SeatLedger.HoldResult.NOT_ENOUGH_SEATS,
+                ledger.tryHold(AIRLINE, FLIGHT_ID, 3));
+        assertEquals(SeatLedger.HoldResult.HELD, ledger.tryHold(AIRLINE, FLIGHT_ID, 2));
+    }
+
+    @Test
+    void expiredSeatsAreNoLongerTrusted() throws InterruptedException {
+        SeatLedger ledger = new SeatLedger(Duration.ofMillis(1), 10);
+        ledger.recordFlights(List.of(flightWithSeats(3)));
+
+        Thread.sleep(5);
+
+        assertEquals(SeatLedger.HoldResult.UNKNOWN, ledger.tryHold(AIRLINE, FLIGHT_ID, 1));
+    }
+
+    @Test
+    void tracksNoMoreThanMaxEntries() {
+        SeatLedger ledger = new SeatLedger(Duration.ofMinutes(1), 1);
+
+        ledger.recordFlights(List.of(flightWithSeats(3),
+                new Flight(FLIGHT_ID + 1, AIRLINE, 100, 0, 3, LocalDate.of(2030, 12, 1))));
+
+        assertEquals(1, ledger.size());
+        assertEquals(SeatLedger.HoldResult.UNKNOWN, ledger.tryHold(AIRLINE, FLIGHT_ID + 1, 1));
+    }
+
+    private static SeatLedger ledgerWithSeats(int seats) {
+        SeatLedger ledger = new SeatLedger(Duration.ofMinutes(1), 10);
+        ledger.recordFlights(List.of(flightWithSeats(seats)));
+        return ledger;
+    }
+
+    private static Flight flightWithSeats(int seats) {
+        return new Flight(FLIGHT_ID, AIRLINE, 100, 0, seats, LocalDate.of(2030, 12, 1));
+    }
+}
@@ -0,0 +1,66 @@
+package services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UpstreamExecutorTest {
+
+    @Test
+    void acceptsCallsWhileTheQueueHasRoom() {
+        UpstreamExecutor executor = new UpstreamExecutor(1, 1);
+
+        assertTrue(executor.tryAcceptCall());
+        assertEquals(0, executor.getRefusedCalls());
+    }
+
+    @Test
+    void refusesCallsOnceTheQueueIsFull() throws InterruptedException {
+        UpstreamExecutor executor = new UpstreamExecutor(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        executor.execute(() -> {
+            running.countDown();
+            await(release);
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        executor.execute(() -> { });
+
+        assertFalse(executor.tryAcceptCall());
+        assertEquals(1, executor.getRefusedCalls());
+        release.countDown();
+    }
+
+    @Test
+    void runsTheTasksOverflowingTheQueueElsewhere() throws InterruptedException {
+        UpstreamExecutor executor = new UpstreamExecutor(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        executor.execute(() -> {
+            running.countDown();
+            await(release);
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        executor.execute(() -> { });
+        CountDownLatch overflowed = new CountDownLatch(1);
+
+        executor.execute(overflowed::countDown);
+
+        assertTrue(overflowed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, executor.getOverflowedTasks());
+        release.countDown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}